@@ -0,0 +1,88 @@
+package br.com.rbcti.tlv.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.rbcti.tlv.DecodeTLV;
+import br.com.rbcti.tlv.DecodeTLVException;
+import br.com.rbcti.tlv.TLVDecodeContext;
+import br.com.rbcti.tlv.TLVDecoder;
+import br.com.rbcti.tlv.TagTLV;
+
+/**
+ * Throughput of {@link DecodeTLV#decode(byte[])} for each kind of EMV data and decode mode.<br>
+ * Run with <code>-prof gc</code> to see the allocation rate.
+ *
+ * @author Renato Cunha
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeTLVBenchmark {
+
+    @Param({ "FCI", "ICC_DATA_1K", "ICC_DATA_4K", "NESTED", "LONG_LENGTHS" })
+    private String corpus;
+
+    @Param({ "COPY", "ZERO_COPY", "LAZY" })
+    private String mode;
+
+    private byte[] data;
+    private DecodeTLV decodeTLV;
+    private TLVDecoder decoder;
+    private TLVDecodeContext arena;
+
+    @Setup
+    public void setup() {
+        switch (corpus) {
+            case "FCI":
+                data = EmvCorpus.FCI;
+                break;
+            case "ICC_DATA_1K":
+                data = EmvCorpus.ICC_DATA_1K;
+                break;
+            case "ICC_DATA_4K":
+                data = EmvCorpus.ICC_DATA_4K;
+                break;
+            case "NESTED":
+                data = EmvCorpus.NESTED;
+                break;
+            default:
+                data = EmvCorpus.LONG_LENGTHS;
+        }
+
+        decodeTLV = new DecodeTLV(true, !"COPY".equals(mode), "LAZY".equals(mode));
+        decoder = decodeTLV.getDecoder();
+        arena = new TLVDecodeContext(true);
+    }
+
+    @Benchmark
+    public List<TagTLV> decode() throws DecodeTLVException {
+        return decodeTLV.decode(data);
+    }
+
+    /**
+     * Same decoding with the tags recycled by an arena, one message at a time.
+     */
+    @Benchmark
+    public List<TagTLV> decodeArena() throws DecodeTLVException {
+        arena.reset();
+        return decoder.decode(data, arena);
+    }
+
+}
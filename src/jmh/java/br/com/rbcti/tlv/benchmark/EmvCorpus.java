@@ -0,0 +1,122 @@
+package br.com.rbcti.tlv.benchmark;
+
+import java.util.Arrays;
+
+import br.com.rbcti.tlv.ByteUtil;
+import br.com.rbcti.tlv.TLVWriter;
+
+/**
+ * EMV data used by the benchmarks.
+ *
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class EmvCorpus {
+
+    /**
+     * FCI returned by SELECT PPSE.
+     */
+    public static final String FCI_HEX = "6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 02 0B 0A";
+
+    /**
+     * ICC data of an authorization request (DE 55).
+     */
+    public static final String ICC_DATA_HEX =
+            "9F 26 08 A1 B2 C3 D4 E5 F6 07 18"
+            + " 9F 27 01 80"
+            + " 9F 10 12 01 10 A0 00 03 22 00 00 00 00 00 00 00 00 00 00 00 FF"
+            + " 9F 37 04 11 22 33 44"
+            + " 9F 36 02 00 2A"
+            + " 95 05 00 00 00 80 00"
+            + " 9A 03 26 10 18"
+            + " 9C 01 00"
+            + " 9F 02 06 00 00 00 01 23 45"
+            + " 9F 03 06 00 00 00 00 00 00"
+            + " 5F 2A 02 09 86"
+            + " 82 02 39 00"
+            + " 9F 1A 02 00 76"
+            + " 9F 33 03 E0 F8 C8"
+            + " 9F 34 03 1E 03 00"
+            + " 9F 35 01 22"
+            + " 9F 1E 08 31 32 33 34 35 36 37 38"
+            + " 84 07 A0 00 00 00 04 10 10"
+            + " 9F 09 02 00 02"
+            + " 9F 41 04 00 00 00 01"
+            + " 5F 34 01 01";
+
+    public static final byte[] FCI = ByteUtil.decodeHex(FCI_HEX);
+
+    /**
+     * DE 55 with about 1 KB: ICC data followed by proprietary templates.
+     */
+    public static final byte[] ICC_DATA_1K = iccData(1024);
+
+    /**
+     * DE 55 with about 4 KB: ICC data followed by proprietary templates.
+     */
+    public static final byte[] ICC_DATA_4K = iccData(4096);
+
+    /**
+     * 32 nested templates with a primitive tag in each level.
+     */
+    public static final byte[] NESTED = nested(32);
+
+    /**
+     * Templates with values of 300 and 70000 bytes, coded with 82 and 83 lengths.
+     */
+    public static final byte[] LONG_LENGTHS = longLengths();
+
+    private EmvCorpus() {
+    }
+
+    private static byte[] iccData(int minLength) {
+        byte[] iccData = ByteUtil.decodeHex(ICC_DATA_HEX);
+        byte[] data = new byte[minLength + 512];
+
+        System.arraycopy(iccData, 0, data, 0, iccData.length);
+        TLVWriter writer = new TLVWriter(data, iccData.length, data.length - iccData.length);
+
+        int template = 0;
+        while (iccData.length + writer.length() < minLength) {
+            writer.startConstructed(0xE1);
+            for (int tag = 1; tag <= 8; tag++) {
+                writer.primitive(0xDF00 + tag, new byte[] { (byte) template, (byte) tag, 0x00, 0x01, 0x02, 0x03, 0x04, 0x05 });
+            }
+            writer.endConstructed();
+            template++;
+        }
+
+        return Arrays.copyOf(data, writer.position());
+    }
+
+    private static byte[] nested(int levels) {
+        byte[] data = new byte[levels * 16];
+        TLVWriter writer = new TLVWriter(data);
+
+        for (int level = 0; level < levels; level++) {
+            writer.startConstructed(0xE1).primitive(0xDF01, new byte[] { (byte) level, 0x00, 0x01, 0x02 });
+        }
+        writer.primitive(0x9F4D, new byte[] { 0x0B, 0x0A });
+        for (int level = 0; level < levels; level++) {
+            writer.endConstructed();
+        }
+
+        return Arrays.copyOf(data, writer.length());
+    }
+
+    private static byte[] longLengths() {
+        byte[] data = new byte[80000];
+        TLVWriter writer = new TLVWriter(data);
+
+        writer.startConstructed(0x71)
+              .primitive(0x9F18, new byte[] { 0x00, 0x00, 0x00, 0x01 })
+              .primitive(0x86, new byte[300])
+              .endConstructed()
+              .startConstructed(0x72)
+              .primitive(0x86, new byte[70000])
+              .endConstructed();
+
+        return Arrays.copyOf(data, writer.length());
+    }
+
+}
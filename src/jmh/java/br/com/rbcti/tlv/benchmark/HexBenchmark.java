@@ -0,0 +1,115 @@
+package br.com.rbcti.tlv.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.rbcti.tlv.ByteUtil;
+import br.com.rbcti.tlv.DecodeTLV;
+import br.com.rbcti.tlv.DecodeTLVException;
+import br.com.rbcti.tlv.TLVFormatter;
+import br.com.rbcti.tlv.TagTLV;
+
+/**
+ * Hexadecimal conversions of {@link ByteUtil}, {@link TagTLV#toString()} and {@link TLVFormatter}, used for logs and test vectors.
+ *
+ * @author Renato Cunha
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HexBenchmark {
+
+    @Param({ "32", "1024" })
+    private int size;
+
+    private byte[] bytes;
+    private String hexSpaced;
+    private TagTLV tag;
+    private static final TLVFormatter FORMATTER = TLVFormatter.builder().build();
+
+    private List<TagTLV> tags;
+    private char[] chars;
+    private StringBuilder builder;
+
+    @Setup
+    public void setup() throws DecodeTLVException {
+        bytes = new byte[size];
+        for (int ct = 0; ct < size; ct++) {
+            bytes[ct] = (byte) (ct * 31);
+        }
+        hexSpaced = ByteUtil.encodeHexSpaced(bytes);
+        chars = new char[size * 3];
+        builder = new StringBuilder(size * 3);
+
+        // an application label with the value of the benchmark
+        byte[] data = new byte[size + 4];
+        data[0] = 0x50;
+        data[1] = (byte) 0x82;
+        data[2] = (byte) (size >>> 8);
+        data[3] = (byte) size;
+        System.arraycopy(bytes, 0, data, 4, size);
+        tags = new DecodeTLV(true).decode(data);
+        tag = tags.get(0);
+    }
+
+    @Benchmark
+    public String encodeHex() {
+        return ByteUtil.encodeHex(bytes);
+    }
+
+    @Benchmark
+    public String encodeHexSpaced() {
+        return ByteUtil.encodeHexSpaced(bytes);
+    }
+
+    @Benchmark
+    public char[] encodeHexInto() {
+        ByteUtil.encodeHex(bytes, 0, size, chars, 0);
+        return chars;
+    }
+
+    @Benchmark
+    public StringBuilder appendHexSpaced() {
+        builder.setLength(0);
+        return ByteUtil.appendHexSpaced(builder, bytes, 0, size);
+    }
+
+    @Benchmark
+    public byte[] decodeHex() {
+        return ByteUtil.decodeHex(hexSpaced);
+    }
+
+    @Benchmark
+    public byte[] decodeHexStrict() {
+        return ByteUtil.decodeHexStrict(hexSpaced);
+    }
+
+    @Benchmark
+    public String tagToString() {
+        return tag.toString();
+    }
+
+    @Benchmark
+    public StringBuilder formatTree() throws IOException {
+        builder.setLength(0);
+        return FORMATTER.format(tags, builder);
+    }
+
+}
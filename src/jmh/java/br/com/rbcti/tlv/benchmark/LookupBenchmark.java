@@ -0,0 +1,112 @@
+package br.com.rbcti.tlv.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import br.com.rbcti.tlv.DecodeTLV;
+import br.com.rbcti.tlv.DecodeTLVException;
+import br.com.rbcti.tlv.TLVDictionary;
+import br.com.rbcti.tlv.TLVIndex;
+import br.com.rbcti.tlv.TLVQuery;
+import br.com.rbcti.tlv.TLVQueryResult;
+import br.com.rbcti.tlv.TagTLV;
+import br.com.rbcti.tlv.TagTLVEnum;
+
+/**
+ * Tag lookups done for each transaction: 9F02, 9F26, 84, 9F10 and 9F36 in the 1 KB ICC data, plus a
+ * tag that is not present.
+ *
+ * @author Renato Cunha
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    private static final int[] TAGS = { 0x9F02, 0x9F26, 0x84, 0x9F10, 0x9F36, 0x5A };
+
+    private static final TLVQuery QUERY = TLVQuery.compile("**/9F02", "**/9F26", "**/84", "**/9F10", "**/9F36", "**/5A");
+
+    private List<TagTLV> tags;
+    private TLVIndex index;
+    private TLVQueryResult result;
+
+    @Setup
+    public void setup() throws DecodeTLVException {
+        tags = new DecodeTLV(true).decode(EmvCorpus.ICC_DATA_1K);
+        index = new TLVIndex(true);
+        index.index(EmvCorpus.ICC_DATA_1K);
+        result = new TLVQueryResult();
+    }
+
+    @Benchmark
+    public void findTagTLV(Blackhole blackhole) {
+        for (int tagId : TAGS) {
+            blackhole.consume(DecodeTLV.findTagTLV(tags, tagId));
+        }
+    }
+
+    @Benchmark
+    public void indexFind(Blackhole blackhole) {
+        for (int tagId : TAGS) {
+            blackhole.consume(index.find(tagId));
+        }
+    }
+
+    /**
+     * The same lookups matched in one pass over the decoded tags.
+     */
+    @Benchmark
+    public TLVQueryResult queryTags() {
+        QUERY.match(tags, result);
+        return result;
+    }
+
+    /**
+     * The same lookups matched in one pass over the raw data, without decoding it.
+     */
+    @Benchmark
+    public TLVQueryResult queryData() throws DecodeTLVException {
+        QUERY.match(EmvCorpus.ICC_DATA_1K, result);
+        return result;
+    }
+
+    @Benchmark
+    public void tagTLVEnumValueOf(Blackhole blackhole) {
+        blackhole.consume(TagTLVEnum.valueOf(0x50));
+        blackhole.consume(TagTLVEnum.valueOf(0x9F4D));
+        blackhole.consume(TagTLVEnum.valueOf(0x9F02));
+    }
+
+    @Benchmark
+    public void dictionaryGet(Blackhole blackhole) {
+        TLVDictionary dictionary = TLVDictionary.getDefault();
+        for (int tagId : TAGS) {
+            blackhole.consume(dictionary.get(tagId));
+        }
+    }
+
+    @Benchmark
+    public void getDescripton(Blackhole blackhole) {
+        for (TagTLV tag : tags) {
+            blackhole.consume(tag.getDescripton());
+        }
+    }
+
+}
@@ -1,5 +1,11 @@
 package br.com.rbcti.tlv;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
 /**
  * Utility class to handle bytes.
  *
@@ -10,17 +16,47 @@ public class ByteUtil {
 
     private final static char[] hexArray = "0123456789abcdef".toCharArray();
 
+    /**
+     * The two hexadecimal digits of each byte value, at the index <code>byte * 2</code>.
+     */
+    private final static char[] HEX_PAIRS = new char[512];
+
+    /**
+     * Value of each hexadecimal digit of the ASCII table. -1 for other characters, -2 for white space.
+     */
+    private final static byte[] HEX_VALUES = new byte[128];
+
+    private static final int INVALID_DIGIT = -1;
+    private static final int WHITE_SPACE = -2;
+
+    static {
+        for (int ct = 0; ct < 256; ct++) {
+            HEX_PAIRS[ct * 2] = hexArray[ct >>> 4];
+            HEX_PAIRS[ct * 2 + 1] = hexArray[ct & 0x0F];
+        }
+
+        Arrays.fill(HEX_VALUES, (byte) INVALID_DIGIT);
+        for (int ct = 0; ct < 10; ct++) {
+            HEX_VALUES['0' + ct] = (byte) ct;
+        }
+        for (int ct = 0; ct < 6; ct++) {
+            HEX_VALUES['a' + ct] = (byte) (10 + ct);
+            HEX_VALUES['A' + ct] = (byte) (10 + ct);
+        }
+        HEX_VALUES[' '] = WHITE_SPACE;
+        HEX_VALUES['\t'] = WHITE_SPACE;
+        HEX_VALUES['\n'] = WHITE_SPACE;
+        HEX_VALUES['\r'] = WHITE_SPACE;
+    }
+
     public static String encodeHex(byte _byte) {
-        return encodeHex(new byte[] {_byte});
+        int v = _byte & 0xFF;
+        return new String(HEX_PAIRS, v * 2, 2);
     }
 
     public static String encodeHex(byte[] bytes) {
         char[] hexChars = new char[bytes.length * 2];
-        for (int j = 0; j < bytes.length; j++) {
-            int v = bytes[j] & 0xFF;
-            hexChars[j * 2] = hexArray[v >>> 4];
-            hexChars[j * 2 + 1] = hexArray[v & 0x0F];
-        }
+        encodeHex(bytes, 0, bytes.length, hexChars, 0);
         return new String(hexChars);
     }
 
@@ -30,45 +66,287 @@ public class ByteUtil {
             return null;
         }
 
-        final int dataLen = bytes.length;
-        int index = 0;
+        if (bytes.length == 0) {
+            return "";
+        }
+
+        char[] hexChars = new char[bytes.length * 3 - 1];
+        encodeHexSpaced(bytes, 0, bytes.length, hexChars, 0);
+        return new String(hexChars);
+    }
+
+    /**
+     * Writes the hexadecimal digits of <code>length</code> bytes of <code>src</code> into <code>dest</code>.
+     *
+     * @param src
+     * @param offset
+     * @param length
+     * @param dest       must have room for <code>length * 2</code> characters.
+     * @param destOffset
+     * @return number of characters written.
+     */
+    public static int encodeHex(byte[] src, int offset, int length, char[] dest, int destOffset) {
+
+        final int end = offset + length;
+        int pos = destOffset;
+
+        for (int ct = offset; ct < end; ct++) {
+            int v = (src[ct] & 0xFF) * 2;
+            dest[pos] = HEX_PAIRS[v];
+            dest[pos + 1] = HEX_PAIRS[v + 1];
+            pos += 2;
+        }
+
+        return pos - destOffset;
+    }
+
+    /**
+     * Writes the hexadecimal digits of <code>length</code> bytes of <code>src</code> into <code>dest</code>,
+     * separated by a space.
+     *
+     * @param src
+     * @param offset
+     * @param length
+     * @param dest       must have room for <code>length * 3 - 1</code> characters.
+     * @param destOffset
+     * @return number of characters written.
+     */
+    public static int encodeHexSpaced(byte[] src, int offset, int length, char[] dest, int destOffset) {
+
+        if (length == 0) {
+            return 0;
+        }
+
+        final int last = offset + length - 1;
+        int pos = destOffset;
+
+        for (int ct = offset; ct < last; ct++) {
+            int v = (src[ct] & 0xFF) * 2;
+            dest[pos] = HEX_PAIRS[v];
+            dest[pos + 1] = HEX_PAIRS[v + 1];
+            dest[pos + 2] = ' ';
+            pos += 3;
+        }
+
+        // no space after the last byte
+        int v = (src[last] & 0xFF) * 2;
+        dest[pos] = HEX_PAIRS[v];
+        dest[pos + 1] = HEX_PAIRS[v + 1];
+
+        return pos + 2 - destOffset;
+    }
+
+    public static StringBuilder appendHex(StringBuilder dest, byte[] src, int offset, int length) {
+        try {
+            return appendHex(dest, src, offset, length, false);
+        } catch (IOException e) {
+            // StringBuilder does not throw IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static StringBuilder appendHexSpaced(StringBuilder dest, byte[] src, int offset, int length) {
+        try {
+            return appendHex(dest, src, offset, length, true);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-        char[] hexChars = new char[dataLen * 2];
+    /**
+     * Appends the hexadecimal digits of <code>length</code> bytes of <code>src</code> to <code>dest</code>.
+     * The digits are written in blocks, not one character at a time.
+     *
+     * @param dest
+     * @param src
+     * @param offset
+     * @param length
+     * @return <code>dest</code>
+     * @throws IOException
+     */
+    public static <A extends Appendable> A appendHex(A dest, byte[] src, int offset, int length) throws IOException {
+        return appendHex(dest, src, offset, length, false);
+    }
 
-        if (dataLen > 1) {
-            hexChars = new char[(dataLen * 2) + (dataLen - 1)];
+    /**
+     * Appends the hexadecimal digits of <code>length</code> bytes of <code>src</code> to <code>dest</code>,
+     * separated by a space.
+     *
+     * @param dest
+     * @param src
+     * @param offset
+     * @param length
+     * @return <code>dest</code>
+     * @throws IOException
+     */
+    public static <A extends Appendable> A appendHexSpaced(A dest, byte[] src, int offset, int length) throws IOException {
+        return appendHex(dest, src, offset, length, true);
+    }
+
+    /**
+     * Appends the hexadecimal digits of <code>length</code> bytes of <code>src</code> starting at the absolute
+     * index <code>offset</code>. The position and limit of <code>src</code> are not changed.<br>
+     * <code>chunk</code> is a work buffer of at least 3 characters, reused by the caller.
+     */
+    static <A extends Appendable> A appendHex(A dest, ByteBuffer src, int offset, int length, boolean spaced, char[] chunk) throws IOException {
+        if (src.hasArray()) {
+            return appendHex(dest, src.array(), src.arrayOffset() + offset, length, spaced, chunk);
         }
 
-        for (int j = 0, i = 0; j < dataLen; j++) {
-            int v = bytes[j] & 0xFF;
-            hexChars[i] = hexArray[v >>> 4];
-            hexChars[i + 1] = hexArray[v & 0x0F];
-            index++;
+        final int bytesPerChunk = chunk.length / 3;
+        byte[] bytes = new byte[Math.min(length, bytesPerChunk)];
 
-            if ((dataLen > 1) && index < dataLen) {
-                hexChars[i + 2] = '\u0020'; // space
-                i += 3;
+        for (int ct = 0; ct < length; ct += bytesPerChunk) {
+            int count = Math.min(bytesPerChunk, length - ct);
+            copy(src, offset + ct, bytes, 0, count);
+            if (spaced && ct > 0) {
+                dest.append(' ');
             }
+            appendHex(dest, bytes, 0, count, spaced, chunk);
         }
+        return dest;
+    }
 
-        return new String(hexChars);
+    private static <A extends Appendable> A appendHex(A dest, byte[] src, int offset, int length, boolean spaced) throws IOException {
+        if (length == 0) {
+            return dest;
+        }
+        if (dest instanceof StringBuilder) {
+            int chars = spaced ? length * 3 - 1 : length * 2;
+            ((StringBuilder) dest).ensureCapacity(((StringBuilder) dest).length() + chars);
+        }
+        return appendHex(dest, src, offset, length, spaced, new char[Math.min(length, 256) * 3]);
     }
 
+    static <A extends Appendable> A appendHex(A dest, byte[] src, int offset, int length, boolean spaced, char[] chunk) throws IOException {
+        final int bytesPerChunk = chunk.length / 3;
+
+        for (int ct = 0; ct < length; ct += bytesPerChunk) {
+            int count = Math.min(bytesPerChunk, length - ct);
+            int chars;
+
+            if (spaced) {
+                if (ct > 0) {
+                    dest.append(' ');
+                }
+                chars = encodeHexSpaced(src, offset + ct, count, chunk, 0);
+            } else {
+                chars = encodeHex(src, offset + ct, count, chunk, 0);
+            }
+            append(dest, chunk, chars);
+        }
+        return dest;
+    }
+
+    static void append(Appendable dest, char[] chars, int count) throws IOException {
+        if (dest instanceof StringBuilder) {
+            ((StringBuilder) dest).append(chars, 0, count);
+        } else if (dest instanceof Writer) {
+            ((Writer) dest).write(chars, 0, count);
+        } else {
+            dest.append(CharBuffer.wrap(chars, 0, count));
+        }
+    }
+
+    /**
+     * Converts hexadecimal digits to bytes. Spaces are ignored.<br>
+     * Other characters that are not hexadecimal digits are converted as -1, see {@link #decodeHexStrict(CharSequence)}
+     * to reject them.
+     *
+     * @param src
+     * @return
+     */
     public static byte[] decodeHex(String src) {
 
-        String srcTemp = src.replaceAll(" ", "");
+        final int len = src.length();
+
+        byte[] data = new byte[len / 2];
+        int count = 0;
+        int high = 0;
+        boolean pending = false;
+
+        for (int ct = 0; ct < len; ct++) {
+            char c = src.charAt(ct);
 
-        int len = srcTemp.length();
+            if (c == ' ') {
+                continue;
+            }
+
+            int digit = (c < 128) ? HEX_VALUES[c] : Character.digit(c, 16);
+            if (digit == WHITE_SPACE) {
+                digit = INVALID_DIGIT;
+            }
 
-        if (len % 2 != 0) {
+            if (pending) {
+                data[count++] = (byte) ((high << 4) + digit);
+            } else {
+                high = digit;
+            }
+            pending = !pending;
+        }
+
+        if (pending) {
             throw new IllegalArgumentException("Invalid format. The length of the hexadecimal string is not a multiple of 2.");
         }
 
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(srcTemp.charAt(i), 16) << 4) + Character.digit(srcTemp.charAt(i + 1), 16));
+        return (count == data.length) ? data : Arrays.copyOf(data, count);
+    }
+
+    /**
+     * Converts hexadecimal digits to bytes. White space (space, tab, line feed and carriage return) is ignored.
+     *
+     * @param src
+     * @return
+     * @throws IllegalArgumentException if a character is not a hexadecimal digit or the number of digits is odd.
+     */
+    public static byte[] decodeHexStrict(CharSequence src) {
+        byte[] data = new byte[src.length() / 2];
+        int count = decodeHex(src, data, 0);
+        return (count == data.length) ? data : Arrays.copyOf(data, count);
+    }
+
+    /**
+     * Converts hexadecimal digits to bytes written into <code>dest</code>, as {@link #decodeHexStrict(CharSequence)}.
+     *
+     * @param src
+     * @param dest
+     * @param destOffset
+     * @return number of bytes written.
+     * @throws IllegalArgumentException if a character is not a hexadecimal digit or the number of digits is odd.
+     * @throws IndexOutOfBoundsException if <code>dest</code> is too small.
+     */
+    public static int decodeHex(CharSequence src, byte[] dest, int destOffset) {
+
+        final int len = src.length();
+
+        int pos = destOffset;
+        int high = 0;
+        boolean pending = false;
+
+        for (int ct = 0; ct < len; ct++) {
+            char c = src.charAt(ct);
+            int digit = (c < 128) ? HEX_VALUES[c] : INVALID_DIGIT;
+
+            if (digit == WHITE_SPACE) {
+                continue;
+            }
+            if (digit == INVALID_DIGIT) {
+                throw new IllegalArgumentException("Invalid hexadecimal digit '" + c + "' at index " + ct + ".");
+            }
+
+            if (pending) {
+                dest[pos++] = (byte) ((high << 4) | digit);
+            } else {
+                high = digit;
+            }
+            pending = !pending;
+        }
+
+        if (pending) {
+            throw new IllegalArgumentException("Invalid format. The number of hexadecimal digits is not a multiple of 2.");
         }
-        return data;
+
+        return pos - destOffset;
     }
 
     public static long fromBigEndian(byte[] buffer) {
@@ -90,4 +368,111 @@ public class ByteUtil {
         return value & 0xFFFFFFFFFFFFFFFFL;
     }
 
-}
\ No newline at end of file
+    /**
+     * Reads <code>length</code> bytes of <code>buffer</code> starting at <code>offset</code> as an unsigned
+     * big-endian number.
+     *
+     * @param buffer
+     * @param offset
+     * @param length from 1 to 8.
+     * @return
+     */
+    public static long fromBigEndian(byte[] buffer, int offset, int length) {
+
+        if (buffer == null) {
+            throw new NullPointerException("buffer is null.");
+        }
+
+        return fromBigEndian(ByteBuffer.wrap(buffer), offset, length);
+    }
+
+    /**
+     * Reads <code>length</code> bytes of <code>buffer</code> starting at <code>offset</code> as packed BCD digits,
+     * two digits per byte. Trailing F nibbles (compressed numeric format) are ignored.
+     *
+     * @param buffer
+     * @param offset
+     * @param length
+     * @return
+     * @throws NumberFormatException if a nibble is not a decimal digit.
+     * @throws ArithmeticException if the number does not fit in a <code>long</code>.
+     */
+    public static long fromBcd(byte[] buffer, int offset, int length) {
+
+        if (buffer == null) {
+            throw new NullPointerException("buffer is null.");
+        }
+
+        return fromBcd(ByteBuffer.wrap(buffer), offset, length);
+    }
+
+    /**
+     * Same as {@link #fromBigEndian(byte[], int, int)} reading the absolute indexes of <code>buffer</code>.
+     */
+    static long fromBigEndian(ByteBuffer buffer, int offset, int length) {
+
+        if ((length > 8) || (length <= 0)) {
+            throw new IllegalArgumentException("invalid buffer length.");
+        }
+
+        long value = 0L;
+
+        for (int ct = 0; ct < length; ct++) {
+            value = (value << 8) | (buffer.get(offset + ct) & 0xFFL);
+        }
+
+        return value;
+    }
+
+    /**
+     * Same as {@link #fromBcd(byte[], int, int)} reading the absolute indexes of <code>buffer</code>.
+     */
+    static long fromBcd(ByteBuffer buffer, int offset, int length) {
+
+        long value = 0L;
+        boolean padding = false;
+
+        for (int ct = 0; ct < length * 2; ct++) {
+            int b = buffer.get(offset + (ct >> 1));
+            int digit = ((ct & 1) == 0) ? (b >>> 4) & 0x0F : b & 0x0F;
+
+            if (digit == 0x0F) {
+                padding = true;
+            } else if (padding || (digit > 9)) {
+                throw new NumberFormatException("Invalid BCD digit at byte " + (ct >> 1) + ".");
+            } else {
+                value = Math.addExact(Math.multiplyExact(value, 10L), digit);
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Copies <code>length</code> bytes of <code>src</code> starting at the absolute index <code>srcOffset</code>.
+     * The position and limit of <code>src</code> are not changed.
+     */
+    static void copy(ByteBuffer src, int srcOffset, byte[] dest, int destOffset, int length) {
+        if (src.hasArray()) {
+            System.arraycopy(src.array(), src.arrayOffset() + srcOffset, dest, destOffset, length);
+        } else {
+            ByteBuffer dup = src.duplicate();
+            dup.clear();
+            dup.position(srcOffset);
+            dup.get(dest, destOffset, length);
+        }
+    }
+
+    /**
+     * Returns a read-only view of <code>length</code> bytes of <code>src</code> starting at the absolute
+     * index <code>offset</code>. The position and limit of <code>src</code> are not changed.
+     */
+    static ByteBuffer slice(ByteBuffer src, int offset, int length) {
+        ByteBuffer dup = src.duplicate();
+        dup.clear();
+        dup.position(offset);
+        dup.limit(offset + length);
+        return dup.slice().asReadOnlyBuffer();
+    }
+
+}
@@ -0,0 +1,116 @@
+package br.com.rbcti.tlv;
+
+import java.util.List;
+
+import br.com.rbcti.tlv.DecodeTLVException.Reason;
+
+/**
+ * Result of {@link TLVDecoder#tryDecode(java.nio.ByteBuffer, int, int, TLVDecodeContext)}.<br>
+ * Invalid data is reported by the result instead of a {@link DecodeTLVException}, so rejecting a message
+ * does not build a message string nor a stack trace.<br>
+ * The result belongs to the {@link TLVDecodeContext} and is overwritten by the next decoding of the context.
+ *
+ * <pre>
+ * DecodeResult result = decoder.tryDecode(data, 0, length, context);
+ * if (!result.isSuccess()) {
+ *     rejected(result.getReason(), result.getOffset());
+ * }
+ * </pre>
+ *
+ * @see TLVDecoder
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class DecodeResult {
+
+    private List<TagTLV> tags;
+    private Reason reason;
+    private int offset;
+    private int tagId;
+    private long limit;
+
+    DecodeResult() {
+    }
+
+    void success(List<TagTLV> tags) {
+        this.tags = tags;
+        this.reason = null;
+        this.offset = -1;
+        this.tagId = -1;
+        this.limit = 0;
+    }
+
+    void failure(Reason reason, int offset, int tagId, long limit) {
+        this.tags = null;
+        this.reason = reason;
+        this.offset = offset;
+        this.tagId = tagId;
+        this.limit = limit;
+    }
+
+    /**
+     * Releases the tags, for a result that lives longer than the decoded data.
+     */
+    void release() {
+        this.tags = null;
+    }
+
+    public boolean isSuccess() {
+        return reason == null;
+    }
+
+    /**
+     * @return the decoded tags, or <code>null</code> when the decoding was unsuccessful.
+     */
+    public List<TagTLV> getTags() {
+        return tags;
+    }
+
+    /**
+     * @return why the decoding was unsuccessful, or <code>null</code> when it was successful.
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return absolute index of the data object where the decoding stopped, or -1 when it was successful.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return tag of the data object where the decoding stopped, or -1 if it is unknown.
+     */
+    public int getTagId() {
+        return tagId;
+    }
+
+    /**
+     * @return the limit that was exceeded, or 0 if the reason is not a limit.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return a new exception with the error of this result.
+     * @throws IllegalStateException if the decoding was successful.
+     */
+    public DecodeTLVException toException() {
+        if (reason == null) {
+            throw new IllegalStateException("The decoding was successful.");
+        }
+        return new DecodeTLVException(reason, offset, tagId, limit);
+    }
+
+    @Override
+    public String toString() {
+        if (reason == null) {
+            return "DecodeResult [tags=" + ((tags != null) ? tags.size() : 0) + "]";
+        }
+        return "DecodeResult [reason=" + reason + ", offset=" + offset + ", tagId=" + tagId + "]";
+    }
+
+}
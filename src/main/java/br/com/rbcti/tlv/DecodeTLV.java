@@ -1,19 +1,16 @@
 package br.com.rbcti.tlv;
 
-import static br.com.rbcti.tlv.ByteUtil.fromBigEndian;
-import static br.com.rbcti.tlv.TagTLV.BYTE_LENGTH_FLAG;
-import static br.com.rbcti.tlv.TagTLV.BYTE_LENGTH_MASK;
-import static br.com.rbcti.tlv.TagTLV.CONSTRUCTED_DATA_OBJECT;
-import static br.com.rbcti.tlv.TagTLV.SECOND_BYTE_TAG_NUMBER;
-
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 
 
 /**
  * Decode data in TLV (Tag Length Value) format.<br>
+ * The result of the last decoding is kept by the instance, so an instance must not be shared between threads.
+ * A {@link TLVDecoder} is immutable and can be shared.
  *
+ * @see TLVDecoder
  * @see TagTLV
  * @see TagTLVEnum
  * @author Renato Cunha
@@ -21,104 +18,150 @@ import java.util.List;
  */
 public class DecodeTLV {
 
-    private static final int MAX_BYTE_LENGTH = 4;
-
     private List<TagTLV> tags;
-    private boolean strict;
+    private final TLVDecoder decoder;
 
     public DecodeTLV() {
-        this.strict = false;
+        this(false);
     }
 
     public DecodeTLV(boolean strict) {
-        this.strict = strict;
+        this(strict, false);
     }
 
-    public List<TagTLV> decode(byte[] data) throws DecodeTLVException {
-
-        List<TagTLV> tags = new ArrayList<TagTLV>();
-
-        int offset = 0;
-
-        do {
-            int tagId = data[offset] & 0xFF;
-            int tagIdFirstByte = tagId;
-
-            offset++;
-
-            if (data.length == offset) {
-                throw new DecodeTLVException("Invalid TLV data. " + ByteUtil.encodeHex((byte)(tagIdFirstByte & 0xFF)) + " tag without size field.");
-            }
-
-            if ((tagId & SECOND_BYTE_TAG_NUMBER) == SECOND_BYTE_TAG_NUMBER) {
-                // It means that the second byte also identifies the tag
-                tagId = (tagId << 8) + (data[offset] & 0xFF);
-                offset++;
-
-                if (data.length == offset) {
-                    throw new DecodeTLVException("Invalid TLV data. " + ByteUtil.encodeHexSpaced(new byte[] { data[offset - 2], data[offset - 1] }) + " tag without length field.");
-                }
-            }
-
-            // Get object size
-            int len = data[offset] & 0xFF;
-            offset++;
-
-            if ((len & BYTE_LENGTH_FLAG) == BYTE_LENGTH_FLAG) {
-                int numberBytesLength = len & BYTE_LENGTH_MASK;
-
-                if (numberBytesLength > MAX_BYTE_LENGTH) {
-                    throw new DecodeTLVException("Maximum size is 4 bytes.");
-                }
-
-                byte[] lengthBytesArray = new byte[MAX_BYTE_LENGTH];
-
-                System.arraycopy(data, offset, lengthBytesArray, (MAX_BYTE_LENGTH - numberBytesLength), numberBytesLength);
-
-                offset += numberBytesLength;
+    /**
+     * @param strict
+     * @param zeroCopy when true, the decoded tags do not copy their values. Each {@link TagTLV}
+     *                 is a view over the decoded array or buffer, which must not be changed while the tags are in use.
+     */
+    public DecodeTLV(boolean strict, boolean zeroCopy) {
+        this(strict, zeroCopy, false);
+    }
 
-                long lengthRead = fromBigEndian(lengthBytesArray);
+    /**
+     * @param strict
+     * @param zeroCopy when true, the decoded tags do not copy their values.
+     * @param lazy     when true, the children of a constructed tag are only decoded when
+     *                 {@link TagTLV#getChildren()} is called. Until then a constructed tag costs only a length skip.
+     *                 In strict mode, errors in the children are thrown by {@link TagTLV#getChildren()} as
+     *                 {@link IllegalStateException}.
+     */
+    public DecodeTLV(boolean strict, boolean zeroCopy, boolean lazy) {
+        this(TLVDecoder.builder().strict(strict).zeroCopy(zeroCopy).lazy(lazy).build());
+    }
 
-                if (lengthRead > Integer.MAX_VALUE) {
-                    throw new DecodeTLVException("The maximum value of the length field is " + Integer.MAX_VALUE);
-                }
+    /**
+     * @param decoder decoder configured by {@link TLVDecoder#builder()}.
+     */
+    public DecodeTLV(TLVDecoder decoder) {
+        this.decoder = decoder;
+    }
 
-                len = (int) lengthRead;
-            }
+    public List<TagTLV> decode(byte[] data) throws DecodeTLVException {
+        this.tags = decoder.decode(data);
+        return this.tags;
+    }
 
-            if ((data.length - offset) < len) {
-                if (strict) {
-                    throw new DecodeTLVException("Invalid data length for " + tagId + " TAG.");
-                }
+    /**
+     * Decodes the remaining bytes of <code>data</code> (from position to limit).<br>
+     * The data is read in place, so heap and direct buffers are supported. The position and limit
+     * of <code>data</code> are not changed.
+     *
+     * @param data
+     * @return
+     * @throws DecodeTLVException
+     */
+    public List<TagTLV> decode(ByteBuffer data) throws DecodeTLVException {
+        this.tags = decoder.decode(data);
+        return this.tags;
+    }
 
-                // fix the size when the content size is less than the value entered
-                len = data.length - offset;
-            }
+    /**
+     * Decodes <code>length</code> bytes of <code>data</code> starting at the absolute index <code>offset</code>.<br>
+     * The data is read in place, so heap and direct buffers are supported. The position and limit
+     * of <code>data</code> are not changed.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @return
+     * @throws DecodeTLVException
+     */
+    public List<TagTLV> decode(ByteBuffer data, int offset, int length) throws DecodeTLVException {
+        this.tags = decoder.decode(data, offset, length);
+        return this.tags;
+    }
 
-            byte[] dataObj = new byte[len];
-            System.arraycopy(data, offset, dataObj, 0, len);
-            offset += len;
+    /**
+     * Decodes only the data objects accepted by <code>filter</code> and the constructed data objects needed to reach
+     * them. The other data objects are skipped by their length, in strict mode their content is not checked.<br>
+     * A constructed data object that was not accepted has only the decoded children.
+     *
+     * @param data
+     * @param filter
+     * @return
+     * @throws DecodeTLVException
+     */
+    public List<TagTLV> decode(byte[] data, TLVFilter filter) throws DecodeTLVException {
+        return decode(ByteBuffer.wrap(data), 0, data.length, filter);
+    }
 
-            TagTLV tagTLV = new TagTLV(tagId, tagIdFirstByte, dataObj);
-            tags.add(tagTLV);
+    /**
+     * Decodes the remaining bytes of <code>data</code> (from position to limit) as {@link #decode(byte[], TLVFilter)}.
+     * The position and limit of <code>data</code> are not changed.
+     *
+     * @param data
+     * @param filter
+     * @return
+     * @throws DecodeTLVException
+     */
+    public List<TagTLV> decode(ByteBuffer data, TLVFilter filter) throws DecodeTLVException {
+        return decode(data, data.position(), data.remaining(), filter);
+    }
 
-            if ((tagIdFirstByte & CONSTRUCTED_DATA_OBJECT) == CONSTRUCTED_DATA_OBJECT) {
-                List<TagTLV> childrenTags = decode(dataObj);
+    /**
+     * Decodes <code>length</code> bytes of <code>data</code> starting at the absolute index <code>offset</code>
+     * as {@link #decode(byte[], TLVFilter)}. The position and limit of <code>data</code> are not changed.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @param filter
+     * @return
+     * @throws DecodeTLVException
+     */
+    public List<TagTLV> decode(ByteBuffer data, int offset, int length, TLVFilter filter) throws DecodeTLVException {
+        this.tags = decoder.decode(data, offset, length, filter, new TLVDecodeContext());
+        return this.tags;
+    }
 
-                for (TagTLV tag : childrenTags) {
-                    tagTLV.addChildTag(tag);
-                }
-            }
+    /**
+     * @return the result of the last decoding.
+     * @deprecated the decode methods return the result. This field makes a <code>DecodeTLV</code> unsafe to share
+     *             between threads, use a {@link TLVDecoder} to share a decoder.
+     */
+    @Deprecated
+    public List<TagTLV> getTags() {
+        return tags;
+    }
 
-        } while (offset != data.length);
+    /**
+     * @return the decoder used by this instance.
+     */
+    public TLVDecoder getDecoder() {
+        return decoder;
+    }
 
-        this.tags = tags;
+    public boolean isStrict() {
+        return decoder.isStrict();
+    }
 
-        return this.tags;
+    public boolean isZeroCopy() {
+        return decoder.isZeroCopy();
     }
 
-    public List<TagTLV> getTags() {
-        return tags;
+    public boolean isLazy() {
+        return decoder.isLazy();
     }
 
     public static TagTLV findTagTLV(List<TagTLV>tags, int tagId) {
@@ -140,6 +183,13 @@ public class DecodeTLV {
         return findTagTLV(tags, tagTLV.getId());
     }
 
+    /**
+     * Prints the tags to the standard output. See {@link TLVFormatter} to write the tags to other outputs.
+     *
+     * @param tags
+     * @param level
+     * @param decorateChar
+     */
     public static void printTagTLV(List<TagTLV> tags, int level, char decorateChar) {
         for (TagTLV _tag : tags) {
             char[] decorate = new char[level * 2];
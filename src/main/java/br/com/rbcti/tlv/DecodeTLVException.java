@@ -1,7 +1,9 @@
 package br.com.rbcti.tlv;
 
 /**
- * Thrown to indicate that data decoding was unsuccessful.
+ * Thrown to indicate that data decoding was unsuccessful.<br>
+ * The exceptions thrown by the decoders tell the {@link Reason} and the offset of the data object
+ * where the decoding stopped.
  *
  * @author Renato Cunha
  * @version 1.0
@@ -10,24 +12,236 @@ public class DecodeTLVException extends Exception {
 
     private static final long serialVersionUID = -2471994922332836822L;
 
+    /**
+     * Why the decoding was unsuccessful.
+     */
+    public enum Reason {
+        /** The data ends after the tag field. */
+        TAG_WITHOUT_LENGTH,
+        /** The tag field has more than 4 bytes. */
+        TAG_TOO_LONG,
+        /** The length field has more than 4 bytes. */
+        LENGTH_FIELD_TOO_LONG,
+        /** The data ends in the middle of the length field. */
+        LENGTH_FIELD_INCOMPLETE,
+        /** The length is greater than {@link Integer#MAX_VALUE}. */
+        LENGTH_TOO_LARGE,
+        /** In strict mode, the length is greater than the available data. */
+        VALUE_TRUNCATED,
+        /** In strict mode, the data ends in the middle of a data object. */
+        INCOMPLETE_DATA,
+        /** The data objects are nested deeper than the configured limit. */
+        DEPTH_LIMIT,
+        /** The data has more data objects than the configured limit. */
+        TAG_COUNT_LIMIT,
+        /** The values of the data objects have more bytes than the configured limit. */
+        VALUE_BYTES_LIMIT
+    }
+
+    private final Reason reason;
+    private final int offset;
+    private final long longOffset;
+    private final int tagId;
+    private final long limit;
+
     public DecodeTLVException() {
         super();
+        this.reason = null;
+        this.offset = -1;
+        this.longOffset = -1;
+        this.tagId = -1;
+        this.limit = 0;
     }
 
     public DecodeTLVException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
         super(message, cause, enableSuppression, writableStackTrace);
+        this.reason = null;
+        this.offset = -1;
+        this.longOffset = -1;
+        this.tagId = -1;
+        this.limit = 0;
     }
 
     public DecodeTLVException(String message, Throwable cause) {
         super(message, cause);
+        this.reason = null;
+        this.offset = -1;
+        this.longOffset = -1;
+        this.tagId = -1;
+        this.limit = 0;
     }
 
     public DecodeTLVException(String message) {
         super(message);
+        this.reason = null;
+        this.offset = -1;
+        this.longOffset = -1;
+        this.tagId = -1;
+        this.limit = 0;
     }
 
     public DecodeTLVException(Throwable cause) {
         super(cause);
+        this.reason = null;
+        this.offset = -1;
+        this.longOffset = -1;
+        this.tagId = -1;
+        this.limit = 0;
+    }
+
+    /**
+     * @param reason
+     * @param offset absolute index of the data object where the decoding stopped.
+     * @param message
+     */
+    public DecodeTLVException(Reason reason, int offset, String message) {
+        super(message);
+        this.reason = reason;
+        this.offset = offset;
+        this.longOffset = offset;
+        this.tagId = -1;
+        this.limit = 0;
+    }
+
+    /**
+     * Exception whose message is only built by {@link #getMessage()}.
+     *
+     * @param reason
+     * @param offset absolute index of the data object where the decoding stopped.
+     * @param tagId  tag of the data object, or -1 if it is unknown.
+     * @param limit  limit that was exceeded, when the reason is a limit.
+     */
+    public DecodeTLVException(Reason reason, int offset, int tagId, long limit) {
+        super();
+        this.reason = reason;
+        this.offset = offset;
+        this.longOffset = offset;
+        this.tagId = tagId;
+        this.limit = limit;
+    }
+
+    /**
+     * Exception of a data object of a file larger than 2 GB, whose message is only built by {@link #getMessage()}.
+     *
+     * @param reason
+     * @param offset offset in the file of the data object where the decoding stopped. {@link #getOffset()} is -1
+     *               when it is greater than {@link Integer#MAX_VALUE}.
+     * @param tagId  tag of the data object, or -1 if it is unknown.
+     * @param limit  limit that was exceeded, when the reason is a limit.
+     */
+    public DecodeTLVException(Reason reason, long offset, int tagId, long limit) {
+        super();
+        this.reason = reason;
+        this.offset = toInt(offset);
+        this.longOffset = offset;
+        this.tagId = tagId;
+        this.limit = limit;
+    }
+
+    /**
+     * @param reason
+     * @param offset offset in the file of the data object where the decoding stopped. {@link #getOffset()} is -1
+     *               when it is greater than {@link Integer#MAX_VALUE}.
+     * @param message
+     */
+    public DecodeTLVException(Reason reason, long offset, String message) {
+        super(message);
+        this.reason = reason;
+        this.offset = toInt(offset);
+        this.longOffset = offset;
+        this.tagId = -1;
+        this.limit = 0;
+    }
+
+    /**
+     * @return why the decoding was unsuccessful, or <code>null</code> if it is unknown.
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return absolute index of the data object where the decoding stopped, or -1 if it is unknown.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return offset of the data object where the decoding stopped, or -1 if it is unknown. Unlike
+     *         {@link #getOffset()} it is also known for the data objects after the first 2 GB of a file.
+     */
+    public long getLongOffset() {
+        return longOffset;
+    }
+
+    /**
+     * @return tag of the data object where the decoding stopped, or -1 if it is unknown.
+     */
+    public int getTagId() {
+        return tagId;
+    }
+
+    /**
+     * @return the limit that was exceeded, or 0 if the reason is not a limit.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String getMessage() {
+        String message = super.getMessage();
+        if ((message == null) && (reason != null)) {
+            message = formatMessage(reason, tagId, limit);
+        }
+        return message;
+    }
+
+    private static String formatMessage(Reason reason, int tagId, long limit) {
+        switch (reason) {
+        case TAG_WITHOUT_LENGTH:
+            if ((tagId & 0xFFFFFF00) != 0) {
+                return "Invalid TLV data. " + ByteUtil.encodeHexSpaced(tagBytes(tagId)) + " tag without length field.";
+            }
+            return "Invalid TLV data. " + ByteUtil.encodeHex((byte) tagId) + " tag without size field.";
+        case TAG_TOO_LONG:
+            return "Invalid TLV data. The maximum size of the tag field is " + limit + " bytes.";
+        case LENGTH_FIELD_TOO_LONG:
+            return "Maximum size is " + limit + " bytes.";
+        case LENGTH_FIELD_INCOMPLETE:
+            return "Invalid TLV data. Length field of " + tagId + " TAG is incomplete.";
+        case LENGTH_TOO_LARGE:
+            return "The maximum value of the length field is " + limit;
+        case VALUE_TRUNCATED:
+            return "Invalid data length for " + tagId + " TAG.";
+        case INCOMPLETE_DATA:
+            return "Invalid TLV data. The data ended in the middle of a data object.";
+        case DEPTH_LIMIT:
+            return "The maximum depth is " + limit + ".";
+        case TAG_COUNT_LIMIT:
+            return "The maximum number of data objects is " + limit + ".";
+        case VALUE_BYTES_LIMIT:
+            return "The maximum number of value bytes is " + limit + ".";
+        default:
+            return reason.name();
+        }
+    }
+
+    private static int toInt(long offset) {
+        return (offset > Integer.MAX_VALUE) ? -1 : (int) offset;
+    }
+
+    private static byte[] tagBytes(int tagId) {
+        int size = 4;
+        while ((size > 1) && ((tagId >>> ((size - 1) * 8)) == 0)) {
+            size--;
+        }
+        byte[] bytes = new byte[size];
+        for (int ct = 0; ct < size; ct++) {
+            bytes[ct] = (byte) (tagId >>> ((size - 1 - ct) * 8));
+        }
+        return bytes;
     }
 
 }
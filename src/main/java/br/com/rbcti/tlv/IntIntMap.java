@@ -0,0 +1,112 @@
+package br.com.rbcti.tlv;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map of <code>int</code> keys to non-negative <code>int</code> values.<br>
+ * Keys and values are stored in primitive arrays, so nothing is allocated by {@link #get(int)} and
+ * {@link #put(int, int)} until the map grows.<br>
+ * This class is not thread-safe.
+ *
+ * @author Renato Cunha
+ * @version 1.0
+ */
+final class IntIntMap {
+
+    static final int NO_VALUE = -1;
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private int[] keys;
+    // value + 1, 0 means an empty slot
+    private int[] values;
+    private int mask;
+    private int size;
+
+    IntIntMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize * 2 - 1, INITIAL_CAPACITY - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @param key
+     * @return the value or {@link #NO_VALUE}.
+     */
+    int get(int key) {
+        int slot = hash(key) & mask;
+        while (values[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * @param key
+     * @param value must not be negative.
+     */
+    void put(int key, int value) {
+        int slot = hash(key) & mask;
+        while (values[slot] != 0) {
+            if (keys[slot] == key) {
+                values[slot] = value + 1;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value + 1;
+        size++;
+
+        // keep the load factor under 0.5
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(values, 0);
+            size = 0;
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+
+        for (int ct = 0; ct < oldKeys.length; ct++) {
+            if (oldValues[ct] != 0) {
+                int slot = hash(oldKeys[ct]) & mask;
+                while (values[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[ct];
+                values[slot] = oldValues[ct];
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
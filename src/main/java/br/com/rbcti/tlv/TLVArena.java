@@ -0,0 +1,106 @@
+package br.com.rbcti.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Storage of the tags decoded with a {@link TLVDecodeContext} created in arena mode.<br>
+ * The tags, the lists of tags and the copied values are taken from arrays that are kept from one message to
+ * the next, so after the first messages nothing is allocated. {@link #reset()} releases all of them at once.
+ *
+ * @see TLVDecodeContext#reset()
+ * @author Renato Cunha
+ * @version 1.0
+ */
+final class TLVArena {
+
+    private static final int INITIAL_TAGS = 64;
+    private static final int INITIAL_LISTS = 16;
+    private static final int INITIAL_VALUES = 1024;
+
+    private TagTLV[] tags = new TagTLV[INITIAL_TAGS];
+    private int tagCount;
+
+    private Object[] lists = new Object[INITIAL_LISTS];
+    private int listCount;
+
+    // copied values, a tag is a view over the buffer of its value
+    private byte[] values = new byte[INITIAL_VALUES];
+    private ByteBuffer valuesBuffer = ByteBuffer.wrap(values);
+    private int valueCount;
+
+    /**
+     * @return a tag whose value is a view over <code>length</code> bytes of <code>source</code>.
+     */
+    TagTLV tag(int tagId, int tagIdFirstByte, ByteBuffer source, int offset, int length) {
+        if (tagCount == tags.length) {
+            tags = Arrays.copyOf(tags, tags.length * 2);
+        }
+
+        TagTLV tag = tags[tagCount];
+        if (tag == null) {
+            tag = new TagTLV(tagId, tagIdFirstByte, source, offset, length);
+            tags[tagCount] = tag;
+        } else {
+            tag.init(tagId, tagIdFirstByte, source, offset, length);
+        }
+
+        tagCount++;
+        return tag;
+    }
+
+    /**
+     * @return a tag whose value is copied from <code>data</code> to the storage of the arena.
+     */
+    TagTLV copy(int tagId, int tagIdFirstByte, ByteBuffer data, int offset, int length) {
+        if (length > values.length - valueCount) {
+            // the tags of the message keep the previous storage, the new one is kept after the reset
+            values = new byte[Math.max(values.length * 2, length)];
+            valuesBuffer = ByteBuffer.wrap(values);
+            valueCount = 0;
+        }
+
+        ByteUtil.copy(data, offset, values, valueCount, length);
+        TagTLV tag = tag(tagId, tagIdFirstByte, valuesBuffer, valueCount, length);
+        valueCount += length;
+        return tag;
+    }
+
+    /**
+     * @return an empty list.
+     */
+    List<TagTLV> list() {
+        if (listCount == lists.length) {
+            lists = Arrays.copyOf(lists, lists.length * 2);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<TagTLV> list = (List<TagTLV>) lists[listCount];
+        if (list == null) {
+            list = new ArrayList<TagTLV>();
+            lists[listCount] = list;
+        }
+
+        listCount++;
+        return list;
+    }
+
+    /**
+     * Releases all tags, lists and values.
+     */
+    void reset() {
+        for (int ct = 0; ct < listCount; ct++) {
+            ((List<?>) lists[ct]).clear();
+        }
+        for (int ct = 0; ct < tagCount; ct++) {
+            // the arena may live longer than the decoded data
+            tags[ct].init(0, 0, null, 0, 0);
+        }
+        tagCount = 0;
+        listCount = 0;
+        valueCount = 0;
+    }
+
+}
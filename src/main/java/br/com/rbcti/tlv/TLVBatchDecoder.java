@@ -0,0 +1,383 @@
+package br.com.rbcti.tlv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Decodes a file or buffer of concatenated records in parallel.<br>
+ * The records are framed sequentially, which only reads their lengths, and decoded by the threads of a
+ * {@link ForkJoinPool}. Each thread reuses its own {@link TLVDecodeContext}, so no decoder or context is created
+ * per record. A batch decoder is immutable and can be shared by any number of threads.
+ *
+ * <pre>
+ * TLVBatchDecoder batch = TLVBatchDecoder.builder()
+ *         .decoder(TLVDecoder.builder().zeroCopy(true).build())
+ *         .framing(TLVBatchDecoder.Framing.LENGTH_PREFIX_2)
+ *         .build();
+ * batch.decode(Paths.get("transactions.dat"), record -&gt; { ... });
+ * </pre>
+ *
+ * An invalid record is delivered with its error and does not stop the decoding. Invalid framing stops the decoding
+ * after the records before it are delivered.
+ *
+ * @see TLVRecord
+ * @see TLVDecoder
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class TLVBatchDecoder {
+
+    /**
+     * How the records are delimited.
+     */
+    public enum Framing {
+
+        /**
+         * Each record is preceded by its length in 2 bytes, big-endian.
+         */
+        LENGTH_PREFIX_2(2),
+
+        /**
+         * Each record is preceded by its length in 4 bytes, big-endian.
+         */
+        LENGTH_PREFIX_4(4),
+
+        /**
+         * Each top-level data object is a record.
+         */
+        TLV(0);
+
+        private final int prefixLength;
+
+        private Framing(int prefixLength) {
+            this.prefixLength = prefixLength;
+        }
+
+        public int getPrefixLength() {
+            return prefixLength;
+        }
+
+    }
+
+    // number of records decoded by one task without splitting it
+    private static final int TASK_RECORDS = 64;
+
+    private final TLVDecoder decoder;
+    private final Framing framing;
+    private final boolean ordered;
+    private final ForkJoinPool pool;
+    private final int batchSize;
+    private final int windowSize;
+
+    private final ThreadLocal<TLVDecodeContext> contexts = ThreadLocal.withInitial(TLVDecodeContext::new);
+
+    private TLVBatchDecoder(Builder builder) {
+        this.decoder = builder.decoder;
+        this.framing = builder.framing;
+        this.ordered = builder.ordered;
+        this.pool = builder.pool;
+        this.batchSize = builder.batchSize;
+        this.windowSize = builder.windowSize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Decodes the records of the remaining bytes of <code>data</code> (from position to limit).<br>
+     * The position and limit of <code>data</code> are not changed. With a zero-copy decoder the tags of the records
+     * are views over <code>data</code>.
+     *
+     * @param data
+     * @param consumer receives each record. In unordered mode it is called by the threads of the pool.
+     * @return number of records.
+     * @throws DecodeTLVException when the framing of the records is invalid.
+     */
+    public long decode(ByteBuffer data, Consumer<TLVRecord> consumer) throws DecodeTLVException {
+        return decode(data, data.position(), data.limit(), consumer);
+    }
+
+    /**
+     * Decodes the records of a file, which is mapped in memory in windows of {@link Builder#windowSize(int)} bytes,
+     * so files larger than 2 GB are supported. The offsets of the records and of their errors are offsets in the file,
+     * given by {@link DecodeTLVException#getLongOffset()} for the errors after the first 2 GB.
+     * With a zero-copy decoder the tags of the records are views over the mapped windows.
+     *
+     * @param file
+     * @param consumer receives each record. In unordered mode it is called by the threads of the pool.
+     * @return number of records.
+     * @throws IOException
+     * @throws DecodeTLVException when the framing of the records is invalid.
+     */
+    public long decode(Path file, Consumer<TLVRecord> consumer) throws IOException, DecodeTLVException {
+        try (TLVRecordReader reader = new TLVRecordReader(framing, decoder.isStrict(),
+                FileChannel.open(file, StandardOpenOption.READ), windowSize)) {
+            return decode(reader, consumer);
+        }
+    }
+
+    private long decode(ByteBuffer data, int offset, int end, Consumer<TLVRecord> consumer) throws DecodeTLVException {
+        try {
+            return decode(new TLVRecordReader(framing, decoder.isStrict(), data, offset, end), consumer);
+        } catch (IOException e) {
+            // a buffer is not read from a channel
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long decode(TLVRecordReader reader, Consumer<TLVRecord> consumer) throws IOException, DecodeTLVException {
+        Batch batch = new Batch(batchSize, ordered, consumer);
+
+        long index = 0;
+        boolean more = true;
+
+        while (more) {
+            int count = 0;
+            DecodeTLVException error = null;
+
+            try {
+                while ((count < batchSize) && (more = reader.next())) {
+                    batch.buffers[count] = reader.data;
+                    batch.offsets[count] = reader.offset;
+                    batch.lengths[count] = reader.length;
+                    batch.positions[count] = reader.position;
+                    count++;
+                }
+            } catch (DecodeTLVException e) {
+                error = e;
+                more = false;
+            }
+
+            batch.index = index;
+            pool.invoke(new DecodeTask(batch, 0, count));
+
+            if (ordered) {
+                for (int ct = 0; ct < count; ct++) {
+                    consumer.accept(batch.records[ct]);
+                    batch.records[ct] = null;
+                }
+            }
+
+            for (int ct = 0; ct < count; ct++) {
+                batch.buffers[ct] = null;
+            }
+
+            index += count;
+
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        return index;
+    }
+
+    public TLVDecoder getDecoder() {
+        return decoder;
+    }
+
+    public Framing getFraming() {
+        return framing;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Records of a batch, framed by the calling thread and decoded by the tasks.
+     */
+    private static final class Batch {
+
+        final ByteBuffer[] buffers;
+        final int[] offsets;
+        final int[] lengths;
+        final long[] positions;
+        final TLVRecord[] records;
+        final Consumer<TLVRecord> consumer;
+
+        // index of the first record of the batch
+        long index;
+
+        Batch(int size, boolean ordered, Consumer<TLVRecord> consumer) {
+            this.buffers = new ByteBuffer[size];
+            this.offsets = new int[size];
+            this.lengths = new int[size];
+            this.positions = new long[size];
+            this.records = ordered ? new TLVRecord[size] : null;
+            this.consumer = consumer;
+        }
+
+    }
+
+    /**
+     * Decodes the records from <code>start</code> to <code>end</code> of a batch, splitting them between the
+     * threads of the pool.
+     */
+    private final class DecodeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Batch batch;
+        private final int start;
+        private final int end;
+
+        DecodeTask(Batch batch, int start, int end) {
+            this.batch = batch;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if ((end - start) > TASK_RECORDS) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new DecodeTask(batch, start, middle), new DecodeTask(batch, middle, end));
+                return;
+            }
+
+            TLVDecodeContext context = contexts.get();
+
+            try {
+                for (int ct = start; ct < end; ct++) {
+                    TLVRecord record = decodeRecord(context, ct);
+                    if (batch.records != null) {
+                        batch.records[ct] = record;
+                    } else {
+                        batch.consumer.accept(record);
+                    }
+                }
+            } finally {
+                // the threads of the pool live longer than the data, their contexts must not keep the last tags
+                context.result.release();
+            }
+        }
+
+        private TLVRecord decodeRecord(TLVDecodeContext context, int ct) {
+            int offset = batch.offsets[ct];
+            int length = batch.lengths[ct];
+            long position = batch.positions[ct];
+
+            DecodeResult result = decoder.tryDecode(batch.buffers[ct], offset, length, context);
+
+            if (result.isSuccess()) {
+                return new TLVRecord(batch.index + ct, position, length, result.getTags(), null);
+            }
+
+            // the offset of the error in the file or buffer, as the offset of the record
+            long errorOffset = (result.getOffset() < 0) ? -1 : position + (result.getOffset() - offset);
+            DecodeTLVException error = new DecodeTLVException(result.getReason(), errorOffset, result.getTagId(),
+                    result.getLimit());
+
+            return new TLVRecord(batch.index + ct, position, length, null, error);
+        }
+
+    }
+
+    /**
+     * Configuration of a {@link TLVBatchDecoder}. By default the records are framed by a 2 bytes length prefix,
+     * decoded by a default {@link TLVDecoder} in the common pool and delivered in order.
+     */
+    public static final class Builder {
+
+        private TLVDecoder decoder = TLVDecoder.builder().build();
+        private Framing framing = Framing.LENGTH_PREFIX_2;
+        private boolean ordered = true;
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+        private int batchSize = 4096;
+        private int windowSize = 1 << 30;
+
+        private Builder() {
+        }
+
+        /**
+         * @param decoder decodes each record, its limits are applied to each record.
+         * @return
+         */
+        public Builder decoder(TLVDecoder decoder) {
+            if (decoder == null) {
+                throw new IllegalArgumentException("decoder must not be null.");
+            }
+            this.decoder = decoder;
+            return this;
+        }
+
+        public Builder framing(Framing framing) {
+            if (framing == null) {
+                throw new IllegalArgumentException("framing must not be null.");
+            }
+            this.framing = framing;
+            return this;
+        }
+
+        /**
+         * @param ordered when true, the records are delivered in the order of the data by the calling thread, after
+         *                each batch is decoded. Otherwise each record is delivered as soon as it is decoded, by the
+         *                threads of the pool, so the consumer must be thread-safe.
+         * @return
+         */
+        public Builder ordered(boolean ordered) {
+            this.ordered = ordered;
+            return this;
+        }
+
+        public Builder pool(ForkJoinPool pool) {
+            if (pool == null) {
+                throw new IllegalArgumentException("pool must not be null.");
+            }
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * @param batchSize number of records framed before they are decoded in parallel. In ordered mode it is also
+         *                  the number of decoded records held until they are delivered.
+         * @return
+         */
+        public Builder batchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batchSize must be greater than zero.");
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param windowSize number of bytes of a file mapped at a time, 1 GB by default. A record larger than a window
+         *                   is mapped in a larger window, up to 2 GB.
+         * @return
+         */
+        public Builder windowSize(int windowSize) {
+            if (windowSize < 1) {
+                throw new IllegalArgumentException("windowSize must be greater than zero.");
+            }
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        public TLVBatchDecoder build() {
+            return new TLVBatchDecoder(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,114 @@
+package br.com.rbcti.tlv;
+
+import java.util.Arrays;
+
+/**
+ * Working state of one decoding of {@link TLVDecoder}.<br>
+ * A context is optional. When it is given to the decode methods it is reused, so nothing is allocated
+ * for the working state. A context must be used by one thread at a time, for example one per worker thread.
+ *
+ * @see TLVDecoder
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class TLVDecodeContext {
+
+    private static final int INITIAL_DEPTH = 8;
+
+    final TLVHeader header = new TLVHeader();
+
+    final DecodeResult result = new DecodeResult();
+
+    // tags from the top level to the current data object, used by the filters
+    private int[] path = new int[INITIAL_DEPTH];
+
+    // stack of the constructed data objects being decoded, indexed by depth
+    int[] ends = new int[INITIAL_DEPTH];
+    int[] valueOffsets = new int[INITIAL_DEPTH];
+    int[] tagIdFirstBytes = new int[INITIAL_DEPTH];
+    Object[] nodes = new Object[INITIAL_DEPTH];
+
+    // counters checked against the limits of the decoder
+    int tagCount;
+    long valueBytes;
+
+    // deepest level read, reported to the listener of the decoder
+    int deepest;
+
+    // storage of the decoded tags in arena mode, otherwise null
+    final TLVArena arena;
+
+    public TLVDecodeContext() {
+        this(false);
+    }
+
+    /**
+     * @param arena when true, the tags, the lists of children and the copied values are recycled from one
+     *              message to the next. The tags decoded with this context are only valid until {@link #reset()},
+     *              which releases all of them at once. Until then each decoding takes more storage from the arena.
+     */
+    public TLVDecodeContext(boolean arena) {
+        this.arena = arena ? new TLVArena() : null;
+    }
+
+    /**
+     * @return <code>true</code> if the decoded tags are recycled by {@link #reset()}.
+     */
+    public boolean isArena() {
+        return arena != null;
+    }
+
+    /**
+     * Releases the tags decoded with this context in arena mode, to be reused by the next decodings.
+     * The released tags and their children and values must not be used anymore. Does nothing if this context
+     * is not in arena mode.
+     */
+    public void reset() {
+        if (arena != null) {
+            arena.reset();
+        }
+    }
+
+    void start() {
+        tagCount = 0;
+        valueBytes = 0;
+        deepest = 0;
+    }
+
+    int[] path(int depth) {
+        if (depth >= path.length) {
+            path = Arrays.copyOf(path, Math.max(depth + 1, path.length * 2));
+        }
+        return path;
+    }
+
+    void push(int depth, int end, int valueOffset, int tagIdFirstByte, Object node) {
+        // a nested decoding of a selected tag starts one level below the levels pushed so far
+        if (depth >= ends.length) {
+            int capacity = Math.max(depth + 1, ends.length * 2);
+            ends = Arrays.copyOf(ends, capacity);
+            valueOffsets = Arrays.copyOf(valueOffsets, capacity);
+            tagIdFirstBytes = Arrays.copyOf(tagIdFirstBytes, capacity);
+            nodes = Arrays.copyOf(nodes, capacity);
+        }
+        ends[depth] = end;
+        valueOffsets[depth] = valueOffset;
+        tagIdFirstBytes[depth] = tagIdFirstByte;
+        nodes[depth] = node;
+    }
+
+    Object pop(int depth) {
+        Object node = nodes[depth];
+        // the context may live longer than the decoded tags
+        nodes[depth] = null;
+        return node;
+    }
+
+    /**
+     * Releases the tags referenced by a decoding that was interrupted by an error.
+     */
+    void clear() {
+        Arrays.fill(nodes, null);
+    }
+
+}
@@ -0,0 +1,57 @@
+package br.com.rbcti.tlv;
+
+import br.com.rbcti.tlv.DecodeTLVException.Reason;
+
+/**
+ * Receives the events of the decodings of a {@link TLVDecoder}, configured by
+ * {@link TLVDecoder.Builder#listener(TLVDecodeListener)}.<br>
+ * The listener is called by all threads that share the decoder, so it must be thread-safe and should be fast.
+ * A decoder without listener does not read the clock nor call any method. The methods do nothing by default.
+ *
+ * @see TLVDecodeMetrics
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public interface TLVDecodeListener {
+
+    /**
+     * A listener that ignores all events.
+     */
+    TLVDecodeListener NONE = new TLVDecodeListener() {
+    };
+
+    /**
+     * Called after a message was decoded.
+     *
+     * @param bytes number of bytes of the message.
+     * @param tags number of data objects read, including the ones skipped by the filter.
+     * @param depth number of nested levels read, the top level is the level 1.
+     * @param nanos duration of the decoding in nanoseconds.
+     */
+    default void decoded(int bytes, int tags, int depth, long nanos) {
+    }
+
+    /**
+     * Called after a message was rejected, whether the error is thrown or returned by
+     * {@link TLVDecoder#tryDecode(java.nio.ByteBuffer, TLVDecodeContext)}.
+     *
+     * @param reason
+     * @param bytes number of bytes of the message.
+     * @param nanos duration of the decoding in nanoseconds.
+     */
+    default void failed(Reason reason, int bytes, long nanos) {
+    }
+
+    /**
+     * Called in non-strict mode when the length of a data object is greater than the available data and
+     * the value is truncated to the available data.
+     *
+     * @param tagId
+     * @param offset absolute index of the data object.
+     * @param length length read from the length field.
+     * @param available length of the truncated value.
+     */
+    default void truncated(int tagId, int offset, int length, int available) {
+    }
+
+}
@@ -0,0 +1,188 @@
+package br.com.rbcti.tlv;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import br.com.rbcti.tlv.DecodeTLVException.Reason;
+
+/**
+ * Counters of the decodings of a {@link TLVDecoder}.<br>
+ * The counters are striped ({@link LongAdder}), so the threads that share the decoder do not contend for them.
+ * Each counter is exact, but the counters are not read atomically together while decodings are running.
+ *
+ * <pre>
+ * TLVDecodeMetrics metrics = new TLVDecodeMetrics();
+ * TLVDecoder decoder = TLVDecoder.builder().listener(metrics).build();
+ * </pre>
+ *
+ * @see TLVDecodeListener
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class TLVDecodeMetrics implements TLVDecodeListener {
+
+    /**
+     * Number of buckets of the latency histogram. The bucket <code>i</code> counts the decodings that took from
+     * <code>2^i</code> to <code>2^(i+1) - 1</code> nanoseconds, the bucket 0 also counts the ones under 1 nanosecond.
+     */
+    public static final int LATENCY_BUCKETS = 64;
+
+    private static final Reason[] REASONS = Reason.values();
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder tags = new LongAdder();
+    private final LongAccumulator maxTags = new LongAccumulator(Math::max, 0L);
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0L);
+    private final LongAdder truncations = new LongAdder();
+    private final LongAdder[] failures = newAdders(REASONS.length);
+    private final LongAdder[] latencies = newAdders(LATENCY_BUCKETS);
+
+    public TLVDecodeMetrics() {
+    }
+
+    private static LongAdder[] newAdders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int ct = 0; ct < size; ct++) {
+            adders[ct] = new LongAdder();
+        }
+        return adders;
+    }
+
+    @Override
+    public void decoded(int bytes, int tags, int depth, long nanos) {
+        this.messages.increment();
+        this.bytes.add(bytes);
+        this.tags.add(tags);
+        this.maxTags.accumulate(tags);
+        this.maxDepth.accumulate(depth);
+        latencies[bucket(nanos)].increment();
+    }
+
+    @Override
+    public void failed(Reason reason, int bytes, long nanos) {
+        failures[reason.ordinal()].increment();
+        latencies[bucket(nanos)].increment();
+    }
+
+    @Override
+    public void truncated(int tagId, int offset, int length, int available) {
+        truncations.increment();
+    }
+
+    private static int bucket(long nanos) {
+        return (nanos <= 1L) ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * @return number of messages decoded without error.
+     */
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    /**
+     * @return number of bytes of the messages decoded without error.
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return number of data objects read from the messages decoded without error.
+     */
+    public long getTags() {
+        return tags.sum();
+    }
+
+    /**
+     * @return greatest number of data objects read from one message.
+     */
+    public long getMaxTags() {
+        return maxTags.get();
+    }
+
+    /**
+     * @return greatest number of nested levels of one message.
+     */
+    public int getMaxDepth() {
+        return (int) maxDepth.get();
+    }
+
+    /**
+     * @return number of values truncated in non-strict mode.
+     */
+    public long getTruncations() {
+        return truncations.sum();
+    }
+
+    /**
+     * @param reason
+     * @return number of messages rejected by the reason.
+     */
+    public long getFailures(Reason reason) {
+        return failures[reason.ordinal()].sum();
+    }
+
+    /**
+     * @return number of messages rejected by any reason.
+     */
+    public long getFailures() {
+        long sum = 0L;
+        for (LongAdder failure : failures) {
+            sum += failure.sum();
+        }
+        return sum;
+    }
+
+    /**
+     * @return the latency histogram of all decodings, with {@link #LATENCY_BUCKETS} buckets.
+     */
+    public long[] getLatencyHistogram() {
+        long[] histogram = new long[LATENCY_BUCKETS];
+        for (int ct = 0; ct < LATENCY_BUCKETS; ct++) {
+            histogram[ct] = latencies[ct].sum();
+        }
+        return histogram;
+    }
+
+    /**
+     * Resets all counters. The decodings running while the counters are reset may be partially counted.
+     */
+    public void reset() {
+        messages.reset();
+        bytes.reset();
+        tags.reset();
+        maxTags.reset();
+        maxDepth.reset();
+        truncations.reset();
+        for (LongAdder failure : failures) {
+            failure.reset();
+        }
+        for (LongAdder latency : latencies) {
+            latency.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("TLVDecodeMetrics [messages=");
+        builder.append(getMessages());
+        builder.append(", bytes=");
+        builder.append(getBytes());
+        builder.append(", tags=");
+        builder.append(getTags());
+        builder.append(", maxTags=");
+        builder.append(getMaxTags());
+        builder.append(", maxDepth=");
+        builder.append(getMaxDepth());
+        builder.append(", truncations=");
+        builder.append(getTruncations());
+        builder.append(", failures=");
+        builder.append(getFailures());
+        builder.append("]");
+        return builder.toString();
+    }
+
+}
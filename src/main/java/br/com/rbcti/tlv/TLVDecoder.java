@@ -0,0 +1,573 @@
+package br.com.rbcti.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import br.com.rbcti.tlv.DecodeTLVException.Reason;
+
+/**
+ * Decode data in TLV (Tag Length Value) format.<br>
+ * A decoder is immutable: it is configured once by {@link Builder} and can be shared by any number of threads.
+ * The working state of each decoding is kept in a {@link TLVDecodeContext}, which may be given by the caller
+ * to be reused by the thread.
+ *
+ * <pre>
+ * private static final TLVDecoder DECODER = TLVDecoder.builder().strict(true).zeroCopy(true).build();
+ * ...
+ * List&lt;TagTLV&gt; tags = DECODER.decode(data);
+ * </pre>
+ *
+ * The decoding does not recurse, so deeply nested data cannot exhaust the stack. Untrusted data should be decoded
+ * with the limits of {@link Builder#maxDepth(int)}, {@link Builder#maxTags(int)} and {@link Builder#maxValueBytes(long)}.
+ *
+ * @see DecodeTLV
+ * @see TLVDecodeContext
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class TLVDecoder {
+
+    private final boolean strict;
+    private final boolean zeroCopy;
+    private final boolean lazy;
+    private final TLVFilter filter;
+    private final int maxDepth;
+    private final int maxTags;
+    private final long maxValueBytes;
+    private final TLVDecodeListener listener;
+
+    private TLVDecoder(Builder builder) {
+        this.strict = builder.strict;
+        this.zeroCopy = builder.zeroCopy;
+        this.lazy = builder.lazy;
+        this.filter = builder.filter;
+        this.maxDepth = builder.maxDepth;
+        this.maxTags = builder.maxTags;
+        this.maxValueBytes = builder.maxValueBytes;
+        // without listener the clock is not read
+        this.listener = (builder.listener == TLVDecodeListener.NONE) ? null : builder.listener;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<TagTLV> decode(byte[] data) throws DecodeTLVException {
+        return decode(data, new TLVDecodeContext());
+    }
+
+    public List<TagTLV> decode(byte[] data, TLVDecodeContext context) throws DecodeTLVException {
+        return decode(ByteBuffer.wrap(data), 0, data.length, filter, context);
+    }
+
+    /**
+     * Decodes the remaining bytes of <code>data</code> (from position to limit).<br>
+     * The data is read in place, so heap and direct buffers are supported. The position and limit
+     * of <code>data</code> are not changed.
+     *
+     * @param data
+     * @return
+     * @throws DecodeTLVException
+     */
+    public List<TagTLV> decode(ByteBuffer data) throws DecodeTLVException {
+        return decode(data, new TLVDecodeContext());
+    }
+
+    public List<TagTLV> decode(ByteBuffer data, TLVDecodeContext context) throws DecodeTLVException {
+        return decode(data, data.position(), data.remaining(), filter, context);
+    }
+
+    /**
+     * Decodes <code>length</code> bytes of <code>data</code> starting at the absolute index <code>offset</code>.<br>
+     * The data is read in place, so heap and direct buffers are supported. The position and limit
+     * of <code>data</code> are not changed.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @return
+     * @throws DecodeTLVException
+     */
+    public List<TagTLV> decode(ByteBuffer data, int offset, int length) throws DecodeTLVException {
+        return decode(data, offset, length, new TLVDecodeContext());
+    }
+
+    public List<TagTLV> decode(ByteBuffer data, int offset, int length, TLVDecodeContext context) throws DecodeTLVException {
+        return decode(data, offset, length, filter, context);
+    }
+
+    /**
+     * Decodes <code>length</code> bytes of <code>data</code> starting at the absolute index <code>offset</code>,
+     * reporting invalid data by the result instead of an exception.<br>
+     * Nothing is allocated for an error: the result is owned by <code>context</code> and is overwritten by
+     * its next decoding. The position and limit of <code>data</code> are not changed.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @param context
+     * @return the result of <code>context</code>.
+     */
+    public DecodeResult tryDecode(ByteBuffer data, int offset, int length, TLVDecodeContext context) {
+        decodeMessage(data, offset, length, filter, context);
+        return context.result;
+    }
+
+    /**
+     * Decodes the remaining bytes of <code>data</code> (from position to limit) as
+     * {@link #tryDecode(ByteBuffer, int, int, TLVDecodeContext)}.
+     *
+     * @param data
+     * @param context
+     * @return the result of <code>context</code>.
+     */
+    public DecodeResult tryDecode(ByteBuffer data, TLVDecodeContext context) {
+        return tryDecode(data, data.position(), data.remaining(), context);
+    }
+
+    List<TagTLV> decode(ByteBuffer data, int offset, int length, TLVFilter filter, TLVDecodeContext context) throws DecodeTLVException {
+        List<TagTLV> tags = decodeMessage(data, offset, length, filter, context);
+
+        if (tags == null) {
+            throw context.result.toException();
+        }
+
+        return tags;
+    }
+
+    /**
+     * Decodes a message, reporting it to the listener.
+     *
+     * @return the decoded tags, or <code>null</code> when the error was recorded in the result of the context.
+     */
+    private List<TagTLV> decodeMessage(ByteBuffer data, int offset, int length, TLVFilter filter, TLVDecodeContext context) {
+        if (listener == null) {
+            return decodeResult(data, offset, length, filter, context);
+        }
+
+        long start = System.nanoTime();
+        List<TagTLV> tags = decodeResult(data, offset, length, filter, context);
+        long nanos = System.nanoTime() - start;
+
+        if (tags != null) {
+            listener.decoded(length, context.tagCount, (context.tagCount == 0) ? 0 : context.deepest + 1, nanos);
+        } else {
+            listener.failed(context.result.getReason(), length, nanos);
+        }
+
+        return tags;
+    }
+
+    /**
+     * @return the decoded tags, or <code>null</code> when the error was recorded in the result of the context.
+     */
+    private List<TagTLV> decodeResult(ByteBuffer data, int offset, int length, TLVFilter filter, TLVDecodeContext context) {
+        if ((offset < 0) || (length < 0) || (offset > data.limit() - length)) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", limit=" + data.limit());
+        }
+
+        context.start();
+
+        List<TagTLV> tags;
+
+        if (filter == null) {
+            tags = decodeRange(data, offset, offset + length, 0, context);
+        } else {
+            tags = decodeSelected(data, offset, offset + length, filter, context);
+        }
+
+        if (tags == null) {
+            context.clear();
+            return null;
+        }
+
+        context.result.success(tags);
+        return tags;
+    }
+
+    /**
+     * Decodes the children of a tag decoded in lazy mode. They are part of a message already reported to the listener.
+     */
+    List<TagTLV> decodeChildren(ByteBuffer data, int offset, int length) throws DecodeTLVException {
+        TLVDecodeContext context = new TLVDecodeContext();
+        List<TagTLV> tags = decodeResult(data, offset, length, null, context);
+
+        if (tags == null) {
+            throw context.result.toException();
+        }
+
+        return tags;
+    }
+
+    public boolean isStrict() {
+        return strict;
+    }
+
+    public boolean isZeroCopy() {
+        return zeroCopy;
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * @return the filter or <code>null</code> when all data objects are decoded.
+     */
+    public TLVFilter getFilter() {
+        return filter;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxTags() {
+        return maxTags;
+    }
+
+    public long getMaxValueBytes() {
+        return maxValueBytes;
+    }
+
+    /**
+     * @return the listener or {@link TLVDecodeListener#NONE}.
+     */
+    public TLVDecodeListener getListener() {
+        return (listener != null) ? listener : TLVDecodeListener.NONE;
+    }
+
+    /**
+     * Decodes all data objects between <code>offset</code> and <code>end</code>. The constructed data objects are
+     * entered with an explicit stack, so the nesting of the data is limited by <code>maxDepth</code> and not
+     * by the stack of the thread.
+     *
+     * @return the decoded tags, or <code>null</code> when the error was recorded in the result of the context.
+     */
+    private List<TagTLV> decodeRange(ByteBuffer data, int offset, int end, int depth, TLVDecodeContext context) {
+
+        final int baseDepth = depth;
+        final TLVHeader header = context.header;
+
+        final TLVArena arena = context.arena;
+
+        List<TagTLV> tags = (arena == null) ? new ArrayList<TagTLV>() : arena.list();
+        TagTLV parent = null;
+
+        while (true) {
+            if (offset >= end) {
+                if (depth == baseDepth) {
+                    break;
+                }
+                depth--;
+                offset = end;
+                end = context.ends[depth];
+                parent = (TagTLV) context.pop(depth);
+                continue;
+            }
+
+            if (!readHeader(data, offset, end, depth, context)) {
+                return null;
+            }
+
+            int valueOffset = header.valueOffset;
+            int len = header.valueLength;
+
+            TagTLV tagTLV = newTag(data, header.tagId, header.tagIdFirstByte, valueOffset, len, arena);
+
+            if (parent == null) {
+                tags.add(tagTLV);
+            } else {
+                parent.addChild(tagTLV, arena);
+            }
+
+            offset = valueOffset + len;
+
+            if (header.isConstructed()) {
+                if (lazy) {
+                    tagTLV.decodeChildrenLater(this);
+                } else {
+                    // The children are read from the same buffer, the value is never decoded from a copy
+                    context.push(depth, end, valueOffset, header.tagIdFirstByte, parent);
+                    depth++;
+                    parent = tagTLV;
+                    end = offset;
+                    offset = valueOffset;
+                }
+            }
+        }
+
+        return tags;
+    }
+
+    /**
+     * Decodes the data objects accepted by the filter. A constructed data object that was entered is only
+     * created when one of its children is selected, after its value was read.
+     *
+     * @return the decoded tags, or <code>null</code> when the error was recorded in the result of the context.
+     */
+    private List<TagTLV> decodeSelected(ByteBuffer data, int offset, int end, TLVFilter filter, TLVDecodeContext context) {
+
+        final TLVHeader header = context.header;
+        final TLVArena arena = context.arena;
+
+        int depth = 0;
+        List<TagTLV> tags = null;
+
+        while (true) {
+            if (offset >= end) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+
+                List<TagTLV> childrenTags = tags;
+                @SuppressWarnings("unchecked")
+                List<TagTLV> parentTags = (List<TagTLV>) context.pop(depth);
+                tags = parentTags;
+
+                int valueOffset = context.valueOffsets[depth];
+                offset = end;
+                end = context.ends[depth];
+
+                if (childrenTags != null) {
+                    TagTLV tagTLV = newTag(data, context.path(depth)[depth], context.tagIdFirstBytes[depth],
+                            valueOffset, offset - valueOffset, arena);
+                    tagTLV.setChildren(childrenTags);
+                    tags = add(tags, tagTLV, arena);
+                }
+                continue;
+            }
+
+            if (!readHeader(data, offset, end, depth, context)) {
+                return null;
+            }
+
+            int tagId = header.tagId;
+            int tagIdFirstByte = header.tagIdFirstByte;
+            int valueOffset = header.valueOffset;
+            int len = header.valueLength;
+            boolean constructed = header.isConstructed();
+
+            int[] path = context.path(depth);
+            path[depth] = tagId;
+
+            offset = valueOffset + len;
+
+            if (filter.accept(path, depth)) {
+                TagTLV tagTLV = newTag(data, tagId, tagIdFirstByte, valueOffset, len, arena);
+
+                if (constructed) {
+                    if (lazy) {
+                        tagTLV.decodeChildrenLater(this);
+                    } else {
+                        List<TagTLV> childrenTags = decodeRange(data, valueOffset, offset, depth + 1, context);
+                        if (childrenTags == null) {
+                            return null;
+                        }
+                        tagTLV.setChildren(childrenTags);
+                    }
+                }
+
+                tags = add(tags, tagTLV, arena);
+
+            } else if (constructed && filter.enter(path, depth)) {
+                context.push(depth, end, valueOffset, tagIdFirstByte, tags);
+                depth++;
+                tags = null;
+                end = offset;
+                offset = valueOffset;
+            }
+        }
+
+        if (tags == null) {
+            tags = (arena == null) ? new ArrayList<TagTLV>() : arena.list();
+        }
+        return tags;
+    }
+
+    private static List<TagTLV> add(List<TagTLV> tags, TagTLV tagTLV, TLVArena arena) {
+        if (tags == null) {
+            tags = (arena == null) ? new ArrayList<TagTLV>() : arena.list();
+        }
+        tags.add(tagTLV);
+        return tags;
+    }
+
+    /**
+     * @return <code>false</code> when the error was recorded in the result of the context.
+     */
+    private boolean readHeader(ByteBuffer data, int offset, int end, int depth, TLVDecodeContext context) {
+        final TLVHeader header = context.header;
+        final DecodeResult result = context.result;
+
+        if (depth >= maxDepth) {
+            result.failure(Reason.DEPTH_LIMIT, offset, -1, maxDepth);
+            return false;
+        }
+        if (++context.tagCount > maxTags) {
+            result.failure(Reason.TAG_COUNT_LIMIT, offset, -1, maxTags);
+            return false;
+        }
+
+        if (!header.tryRead(data, offset, end, strict)) {
+            result.failure(header.error, header.errorOffset, header.tagId, header.errorLimit);
+            return false;
+        }
+
+        if (depth > context.deepest) {
+            context.deepest = depth;
+        }
+
+        if (header.truncated && (listener != null)) {
+            listener.truncated(header.tagId, offset, header.declaredLength, header.valueLength);
+        }
+
+        // the value of a constructed data object is counted again by its children, as it is by the copies
+        context.valueBytes += header.valueLength;
+        if (context.valueBytes > maxValueBytes) {
+            result.failure(Reason.VALUE_BYTES_LIMIT, offset, header.tagId, maxValueBytes);
+            return false;
+        }
+
+        return true;
+    }
+
+    private TagTLV newTag(ByteBuffer data, int tagId, int tagIdFirstByte, int valueOffset, int len, TLVArena arena) {
+        if (arena != null) {
+            return zeroCopy ? arena.tag(tagId, tagIdFirstByte, data, valueOffset, len)
+                    : arena.copy(tagId, tagIdFirstByte, data, valueOffset, len);
+        }
+
+        if (zeroCopy) {
+            return new TagTLV(tagId, tagIdFirstByte, data, valueOffset, len);
+        }
+
+        byte[] dataObj = new byte[len];
+        ByteUtil.copy(data, valueOffset, dataObj, 0, len);
+        return new TagTLV(tagId, tagIdFirstByte, dataObj);
+    }
+
+    /**
+     * Configuration of a {@link TLVDecoder}. By default the decoder is not strict and decodes all data objects
+     * eagerly, copying their values.
+     */
+    public static final class Builder {
+
+        private boolean strict;
+        private boolean zeroCopy;
+        private boolean lazy;
+        private TLVFilter filter;
+        private int maxDepth = Integer.MAX_VALUE;
+        private int maxTags = Integer.MAX_VALUE;
+        private long maxValueBytes = Long.MAX_VALUE;
+        private TLVDecodeListener listener = TLVDecodeListener.NONE;
+
+        private Builder() {
+        }
+
+        /**
+         * @param strict when true, a length greater than the available data is an error. Otherwise the length
+         *               is fixed to the available data.
+         * @return
+         */
+        public Builder strict(boolean strict) {
+            this.strict = strict;
+            return this;
+        }
+
+        /**
+         * @param zeroCopy when true, the decoded tags do not copy their values. Each {@link TagTLV}
+         *                 is a view over the decoded array or buffer, which must not be changed while the tags are in use.
+         * @return
+         */
+        public Builder zeroCopy(boolean zeroCopy) {
+            this.zeroCopy = zeroCopy;
+            return this;
+        }
+
+        /**
+         * @param lazy when true, the children of a constructed tag are only decoded when
+         *             {@link TagTLV#getChildren()} is called. Until then a constructed tag costs only a length skip.
+         *             In strict mode, errors in the children are thrown by {@link TagTLV#getChildren()} as
+         *             {@link IllegalStateException}.
+         * @return
+         */
+        public Builder lazy(boolean lazy) {
+            this.lazy = lazy;
+            return this;
+        }
+
+        /**
+         * @param filter decodes only the data objects accepted by the filter and the constructed data objects
+         *               needed to reach them. See {@link DecodeTLV#decode(byte[], TLVFilter)}.
+         * @return
+         */
+        public Builder filter(TLVFilter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * @param maxDepth maximum number of nested levels, the top level is the level 1. A deeper data object
+         *                 is an error of {@link Reason#DEPTH_LIMIT}. In lazy mode the limit is applied to
+         *                 each level decoded by {@link TagTLV#getChildren()}. Unlimited by default.
+         * @return
+         */
+        public Builder maxDepth(int maxDepth) {
+            if (maxDepth < 1) {
+                throw new IllegalArgumentException("maxDepth must be greater than zero.");
+            }
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * @param maxTags maximum number of data objects read by one decoding, including the skipped ones.
+         *                More data objects is an error of {@link Reason#TAG_COUNT_LIMIT}. Unlimited by default.
+         * @return
+         */
+        public Builder maxTags(int maxTags) {
+            if (maxTags < 0) {
+                throw new IllegalArgumentException("maxTags must not be negative.");
+            }
+            this.maxTags = maxTags;
+            return this;
+        }
+
+        /**
+         * @param maxValueBytes maximum sum of the value lengths of the data objects read by one decoding, checked
+         *                      before a value is copied. The value of a constructed data object is counted along with
+         *                      the values of its children. More bytes is an error of {@link Reason#VALUE_BYTES_LIMIT}.
+         *                      Unlimited by default.
+         * @return
+         */
+        public Builder maxValueBytes(long maxValueBytes) {
+            if (maxValueBytes < 0) {
+                throw new IllegalArgumentException("maxValueBytes must not be negative.");
+            }
+            this.maxValueBytes = maxValueBytes;
+            return this;
+        }
+
+        /**
+         * @param listener receives the events of the decodings, for example a {@link TLVDecodeMetrics}.
+         *                 None by default.
+         * @return
+         */
+        public Builder listener(TLVDecodeListener listener) {
+            if (listener == null) {
+                throw new IllegalArgumentException("listener must not be null.");
+            }
+            this.listener = listener;
+            return this;
+        }
+
+        public TLVDecoder build() {
+            return new TLVDecoder(this);
+        }
+
+    }
+
+}
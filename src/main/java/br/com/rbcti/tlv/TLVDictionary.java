@@ -0,0 +1,202 @@
+package br.com.rbcti.tlv;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary of tags, looked up by the tag id in constant time.<br>
+ * {@link #emv()} has the EMV tags, loaded from a resource bundled with the library. Other tags are added with
+ * {@link #builder()}. A dictionary is immutable and can be shared by any number of threads.
+ *
+ * <pre>
+ * TLVDictionary dictionary = TLVDictionary.builder()
+ *         .addAll(TLVDictionary.emv())
+ *         .add(new TLVTag(0xDF8101, "Kernel Data", TLVTag.Format.B, 1, 32))
+ *         .build();
+ *
+ * TLVDictionary.setDefault(dictionary);
+ * </pre>
+ *
+ * The default dictionary is used by {@link TagTLV#getDescripton()} and the formatting of the values.
+ *
+ * @see TLVTag
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class TLVDictionary {
+
+    static final String EMV_RESOURCE = "emv-tags.txt";
+
+    private static volatile TLVDictionary defaultDictionary;
+
+    private final TLVTag[] tags;
+    private final IntIntMap index;
+
+    private TLVDictionary(TLVTag[] tags) {
+        this.tags = tags;
+        this.index = new IntIntMap(tags.length);
+        for (int ct = 0; ct < tags.length; ct++) {
+            index.put(tags[ct].getTagId(), ct);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the dictionary of the EMV tags.
+     */
+    public static TLVDictionary emv() {
+        return EmvHolder.EMV;
+    }
+
+    /**
+     * @return the dictionary set by {@link #setDefault(TLVDictionary)}, or {@link #emv()} when none was set.
+     */
+    public static TLVDictionary getDefault() {
+        TLVDictionary dictionary = defaultDictionary;
+        return (dictionary != null) ? dictionary : emv();
+    }
+
+    /**
+     * @param dictionary the dictionary used by {@link TagTLV}, or <code>null</code> to use {@link #emv()}.
+     */
+    public static void setDefault(TLVDictionary dictionary) {
+        defaultDictionary = dictionary;
+    }
+
+    /**
+     * @param tagId
+     * @return the description of the tag or <code>null</code> if the tag is unknown.
+     */
+    public TLVTag get(int tagId) {
+        int position = index.get(tagId);
+        return (position == IntIntMap.NO_VALUE) ? null : tags[position];
+    }
+
+    public TLVTag get(TagTLVEnum tag) {
+        return get(tag.getId());
+    }
+
+    public boolean contains(int tagId) {
+        return index.get(tagId) != IntIntMap.NO_VALUE;
+    }
+
+    public int size() {
+        return tags.length;
+    }
+
+    /**
+     * @return the tags in the order they were added.
+     */
+    public List<TLVTag> getTags() {
+        return Collections.unmodifiableList(Arrays.asList(tags));
+    }
+
+    private static final class EmvHolder {
+
+        static final TLVDictionary EMV = loadEmv();
+
+        private static TLVDictionary loadEmv() {
+            try (InputStream in = TLVDictionary.class.getResourceAsStream(EMV_RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Resource not found: " + EMV_RESOURCE);
+                }
+                return builder().load(in).build();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Tags of a {@link TLVDictionary}. A tag added again replaces the previous one.
+     */
+    public static final class Builder {
+
+        private final Map<Integer, TLVTag> tags = new LinkedHashMap<Integer, TLVTag>();
+
+        private Builder() {
+        }
+
+        public Builder add(TLVTag tag) {
+            tags.put(tag.getTagId(), tag);
+            return this;
+        }
+
+        public Builder addAll(TLVDictionary dictionary) {
+            for (TLVTag tag : dictionary.tags) {
+                add(tag);
+            }
+            return this;
+        }
+
+        /**
+         * Reads tags in the format of the EMV resource, one tag per line (UTF-8):
+         *
+         * <pre>
+         * # tag   format  min  max  name
+         * 9F02    n       6    6    Amount, Authorised (Numeric)
+         * </pre>
+         *
+         * The tag is written with 2, 4, 6 or 8 hexadecimal digits and no sign, the format is one of {@link TLVTag.Format} and the lengths are in bytes.
+         * Empty lines and lines starting with # are ignored. The stream is not closed.
+         *
+         * @param in
+         * @return
+         * @throws IOException
+         * @throws IllegalArgumentException if a line is invalid.
+         */
+        public Builder load(InputStream in) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+            List<TLVTag> loaded = new ArrayList<TLVTag>();
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+", 5);
+
+                if (fields.length != 5) {
+                    throw new IllegalArgumentException("Invalid tag at line " + lineNumber + ": " + line);
+                }
+
+                try {
+                    loaded.add(new TLVTag(TLVPath.parseTag(fields[0], line), fields[4],
+                            TLVTag.Format.valueOf(fields[1].toUpperCase()), Integer.parseInt(fields[2]), Integer.parseInt(fields[3])));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid tag at line " + lineNumber + ": " + line, e);
+                }
+            }
+
+            for (TLVTag tag : loaded) {
+                add(tag);
+            }
+            return this;
+        }
+
+        public TLVDictionary build() {
+            return new TLVDictionary(tags.values().toArray(new TLVTag[tags.size()]));
+        }
+
+    }
+
+}
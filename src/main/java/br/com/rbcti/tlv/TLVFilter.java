@@ -0,0 +1,73 @@
+package br.com.rbcti.tlv;
+
+/**
+ * Selects the data objects decoded by {@link DecodeTLV#decode(byte[], TLVFilter)}.<br>
+ * A data object is identified by its path: the tags from the top level to the data object, where
+ * <code>path[depth]</code> is the tag of the data object and <code>path[0]</code> is a top-level tag.
+ * The path array is reused, it must not be kept by the filter.<br>
+ * A filter configured in a {@link TLVDecoder} is used by all threads that share the decoder, so it must be thread-safe.
+ * The filters returned by {@link #tags(int...)} and {@link #paths(String...)} are immutable.
+ *
+ * @see DecodeTLV
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public interface TLVFilter {
+
+    /**
+     * @param path
+     * @param depth
+     * @return <code>true</code> to decode the data object. A constructed data object is decoded with all its children.
+     */
+    boolean accept(int[] path, int depth);
+
+    /**
+     * Called for the constructed data objects that were not accepted.
+     *
+     * @param path
+     * @param depth
+     * @return <code>true</code> to look for accepted data objects among the children,
+     *         <code>false</code> to skip the value by its length.
+     */
+    boolean enter(int[] path, int depth);
+
+    /**
+     * Accepts the data objects with any of the tags, wherever they are.
+     *
+     * @param tagIds
+     * @return
+     */
+    static TLVFilter tags(int... tagIds) {
+        return new TLVFilters.TagFilter(tagIds);
+    }
+
+    /**
+     * Accepts the data objects with any of the tags, wherever they are.
+     *
+     * @param tags
+     * @return
+     */
+    static TLVFilter tags(TagTLVEnum... tags) {
+        int[] tagIds = new int[tags.length];
+        for (int ct = 0; ct < tags.length; ct++) {
+            tagIds[ct] = tags[ct].getId();
+        }
+        return tags(tagIds);
+    }
+
+    /**
+     * Accepts the data objects with any of the paths. The children of a constructed data object are only
+     * read when it is in the way of one of the paths.
+     *
+     * @param paths hexadecimal tags from the top level separated by <code>/</code>, for example <code>6F/A5/50</code>.
+     * @return
+     */
+    static TLVFilter paths(String... paths) {
+        int[][] tagPaths = new int[paths.length][];
+        for (int ct = 0; ct < paths.length; ct++) {
+            tagPaths[ct] = TLVPath.parse(paths[ct]);
+        }
+        return new TLVFilters.PathFilter(tagPaths);
+    }
+
+}
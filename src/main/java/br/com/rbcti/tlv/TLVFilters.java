@@ -0,0 +1,76 @@
+package br.com.rbcti.tlv;
+
+/**
+ * Implementations of the {@link TLVFilter} factory methods.
+ *
+ * @author Renato Cunha
+ * @version 1.0
+ */
+final class TLVFilters {
+
+    private TLVFilters() {
+    }
+
+    static final class TagFilter implements TLVFilter {
+
+        private final IntIntMap tagIds;
+
+        TagFilter(int[] tagIds) {
+            this.tagIds = new IntIntMap(tagIds.length);
+            for (int tagId : tagIds) {
+                this.tagIds.put(tagId, 0);
+            }
+        }
+
+        @Override
+        public boolean accept(int[] path, int depth) {
+            return tagIds.get(path[depth]) != IntIntMap.NO_VALUE;
+        }
+
+        @Override
+        public boolean enter(int[] path, int depth) {
+            return true;
+        }
+
+    }
+
+    static final class PathFilter implements TLVFilter {
+
+        private final int[][] paths;
+
+        PathFilter(int[][] paths) {
+            this.paths = paths;
+        }
+
+        @Override
+        public boolean accept(int[] path, int depth) {
+            for (int[] candidate : paths) {
+                if ((candidate.length == depth + 1) && startsWith(candidate, path, depth)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean enter(int[] path, int depth) {
+            for (int[] candidate : paths) {
+                if ((candidate.length > depth + 1) && startsWith(candidate, path, depth)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean startsWith(int[] candidate, int[] path, int depth) {
+            for (int ct = depth; ct >= 0; ct--) {
+                if (candidate[ct] != path[ct]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
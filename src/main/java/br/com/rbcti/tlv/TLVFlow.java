@@ -0,0 +1,94 @@
+package br.com.rbcti.tlv;
+
+/**
+ * Interfaces of a stream with flow control, with the same methods and rules of <code>java.util.concurrent.Flow</code>
+ * of Java 9, which is not available in Java 8.<br>
+ * A subscriber receives items only up to the number it requested by {@link Subscription#request(long)}. On Java 9
+ * and later the interfaces are adapted to the ones of <code>java.util.concurrent.Flow</code> with method references.
+ *
+ * @see TLVProcessor
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class TLVFlow {
+
+    private TLVFlow() {
+    }
+
+    /**
+     * Producer of items received by subscribers.
+     *
+     * @param <T> type of the items.
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+
+        /**
+         * Adds a subscriber, which receives {@link Subscriber#onSubscribe(Subscription)} before any other call.
+         *
+         * @param subscriber
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+
+    }
+
+    /**
+     * Receiver of items. The methods are called in order, never at the same time.
+     *
+     * @param <T> type of the items.
+     */
+    public interface Subscriber<T> {
+
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Receives the next item, called at most the number of times requested.
+         *
+         * @param item
+         */
+        void onNext(T item);
+
+        /**
+         * Receives the error that ended the stream. No other method is called after it.
+         *
+         * @param throwable
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called at the end of the stream. No other method is called after it.
+         */
+        void onComplete();
+
+    }
+
+    /**
+     * Link between a publisher and one subscriber.
+     */
+    public interface Subscription {
+
+        /**
+         * Adds <code>n</code> items to the demand of the subscriber. Long.MAX_VALUE means no limit.
+         *
+         * @param n must be greater than zero, otherwise the subscriber receives an
+         *          {@link IllegalArgumentException} by {@link Subscriber#onError(Throwable)}.
+         */
+        void request(long n);
+
+        /**
+         * Stops the delivery of items, some items may still be delivered.
+         */
+        void cancel();
+
+    }
+
+    /**
+     * Subscriber of items of type T that publishes items of type R.
+     *
+     * @param <T> type of the received items.
+     * @param <R> type of the published items.
+     */
+    public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+
+}
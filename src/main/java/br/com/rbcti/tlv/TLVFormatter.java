@@ -0,0 +1,381 @@
+package br.com.rbcti.tlv;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes decoded tags as text to any {@link Appendable}, such as a {@link StringBuilder} or a {@link java.io.Writer}.<br>
+ * The values are written straight from the tags, in place for tags decoded in zero-copy mode, and no string is
+ * built for each tag. The values of the masked tags are written as <code>*</code>, two for each byte. A masked
+ * constructed tag is written the same way, with its whole value masked and without its children.<br>
+ * A formatter is immutable and can be shared by any number of threads.
+ *
+ * <pre>
+ * private static final TLVFormatter FORMATTER = TLVFormatter.builder().style(TLVFormatter.Style.JSON).build();
+ * ...
+ * FORMATTER.format(tags, writer);
+ * </pre>
+ *
+ * Styles of the FCI <code>6F 0A A5 08 50 06 41 70 70 54 73 74</code>:
+ *
+ * <pre>
+ * TREE:
+ * 6F FILE_CONTROL_INFORMATION_TEMPLATE [10]
+ *   A5 FILE_CONTROL_INFORMATION_PROPRIETARY_TEMPLATE [8]
+ *     50 APPLICATION_LABEL [6] 41 70 70 54 73 74 "AppTst"
+ *
+ * ONE_LINE:
+ * 6F{A5{50=417070547374}}
+ *
+ * JSON:
+ * [{"tag":"6F","length":10,"children":[{"tag":"A5","length":8,"children":[{"tag":"50","length":6,"value":"417070547374"}]}]}]
+ * </pre>
+ *
+ * @see DecodeTLV#printTagTLV(List, int, char)
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class TLVFormatter {
+
+    public enum Style {
+        /** One tag per line, the children indented, with the name, length, value and text of the tag. */
+        TREE,
+        /** All tags in one line, the children between braces. */
+        ONE_LINE,
+        /** An array of objects with tag, length and value or children. */
+        JSON
+    }
+
+    /**
+     * Tags masked by default: 5A (PAN), 57 (Track 2 Equivalent Data) and 9F1F (Track 1 Discretionary Data).
+     */
+    private static final int[] DEFAULT_MASKED_TAGS = { 0x5A, 0x57, 0x9F1F };
+
+    private static final char[] UPPER_HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final int CHUNK_SIZE = 3 * 128;
+    private static final int INITIAL_DEPTH = 8;
+
+    private final Style style;
+    private final int indent;
+    private final char maskChar;
+    private final IntIntMap maskedTags;
+
+    private TLVFormatter(Builder builder) {
+        this.style = builder.style;
+        this.indent = builder.indent;
+        this.maskChar = builder.maskChar;
+        this.maskedTags = new IntIntMap(builder.maskedTags.length);
+        for (int tagId : builder.maskedTags) {
+            maskedTags.put(tagId, 0);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Style getStyle() {
+        return style;
+    }
+
+    public boolean isMasked(int tagId) {
+        return maskedTags.get(tagId) != IntIntMap.NO_VALUE;
+    }
+
+    /**
+     * @param tags
+     * @return the tags as text.
+     */
+    public String format(List<TagTLV> tags) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            format(tags, builder);
+        } catch (IOException e) {
+            // StringBuilder does not throw IOException
+            throw new IllegalStateException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the tags to <code>out</code>. The tree is walked without recursion, so any nesting can be written.
+     *
+     * @param tags
+     * @param out
+     * @return <code>out</code>
+     * @throws IOException
+     */
+    public <A extends Appendable> A format(List<TagTLV> tags, A out) throws IOException {
+
+        // work buffer of the hexadecimal digits and the masks, reused by all tags
+        final char[] chunk = new char[CHUNK_SIZE];
+
+        List<?>[] lists = new List<?>[INITIAL_DEPTH];
+        int[] indexes = new int[INITIAL_DEPTH];
+        int depth = 0;
+
+        lists[0] = tags;
+        indexes[0] = 0;
+
+        if (style == Style.JSON) {
+            out.append('[');
+        }
+
+        while (depth >= 0) {
+            List<?> list = lists[depth];
+            int index = indexes[depth];
+
+            if (index == list.size()) {
+                lists[depth] = null;
+                depth--;
+                if (depth >= 0) {
+                    endConstructed(out);
+                }
+                continue;
+            }
+
+            indexes[depth] = index + 1;
+            TagTLV tag = (TagTLV) list.get(index);
+
+            // a masked tag is written as one masked value, its children are not read
+            List<TagTLV> children = isMasked(tag.getTagId()) ? null : tag.getChildren();
+
+            boolean constructed = (children != null) && tag.isConstructedObject();
+
+            writeTag(out, tag, depth, index, constructed, chunk);
+
+            if (constructed) {
+                depth++;
+                if (depth == lists.length) {
+                    lists = Arrays.copyOf(lists, depth * 2);
+                    indexes = Arrays.copyOf(indexes, depth * 2);
+                }
+                lists[depth] = children;
+                indexes[depth] = 0;
+            }
+        }
+
+        if (style == Style.JSON) {
+            out.append(']');
+        }
+
+        return out;
+    }
+
+    private void writeTag(Appendable out, TagTLV tag, int depth, int index, boolean constructed, char[] chunk) throws IOException {
+        switch (style) {
+        case TREE:
+            writeIndent(out, depth * indent);
+            writeTagId(out, tag.getTagId());
+            String description = tag.getDescripton();
+            if (!description.isEmpty()) {
+                out.append(' ').append(description);
+            }
+            out.append(" [");
+            writeInt(out, tag.getValueLength());
+            out.append(']');
+            if (!constructed && (tag.getValueLength() > 0)) {
+                out.append(' ');
+                writeValue(out, tag, true, chunk);
+                writeText(out, tag);
+            }
+            out.append('\n');
+            break;
+
+        case ONE_LINE:
+            if (index > 0) {
+                out.append(' ');
+            }
+            writeTagId(out, tag.getTagId());
+            if (constructed) {
+                out.append('{');
+            } else {
+                out.append('=');
+                writeValue(out, tag, false, chunk);
+            }
+            break;
+
+        case JSON:
+        default:
+            if (index > 0) {
+                out.append(',');
+            }
+            out.append("{\"tag\":\"");
+            writeTagId(out, tag.getTagId());
+            out.append("\",\"length\":");
+            writeInt(out, tag.getValueLength());
+            if (constructed) {
+                out.append(",\"children\":[");
+            } else {
+                out.append(",\"value\":\"");
+                writeValue(out, tag, false, chunk);
+                out.append("\"}");
+            }
+            break;
+        }
+    }
+
+    private void endConstructed(Appendable out) throws IOException {
+        if (style == Style.ONE_LINE) {
+            out.append('}');
+        } else if (style == Style.JSON) {
+            out.append("]}");
+        }
+    }
+
+    private void writeValue(Appendable out, TagTLV tag, boolean spaced, char[] chunk) throws IOException {
+        if (!isMasked(tag.getTagId())) {
+            tag.appendValueHex(out, spaced, chunk);
+            return;
+        }
+
+        int length = tag.getValueLength();
+        int chars = spaced ? Math.max(length * 3 - 1, 0) : length * 2;
+
+        // the size of the chunk is a multiple of 3, so the spaces are in the same places in every block
+        for (int ct = 0; ct < chunk.length; ct++) {
+            chunk[ct] = (spaced && (ct % 3 == 2)) ? ' ' : maskChar;
+        }
+        for (int written = 0; written < chars; written += chunk.length) {
+            ByteUtil.append(out, chunk, Math.min(chunk.length, chars - written));
+        }
+    }
+
+    /**
+     * Text of the tags whose format is a, an or ans in the default {@link TLVDictionary}.
+     */
+    private void writeText(Appendable out, TagTLV tag) throws IOException {
+        if (isMasked(tag.getTagId())) {
+            return;
+        }
+
+        TLVTag dictionaryTag = TLVDictionary.getDefault().get(tag.getTagId());
+
+        if (dictionaryTag == null) {
+            return;
+        }
+
+        switch (dictionaryTag.getFormat()) {
+        case A:
+        case AN:
+        case ANS:
+            CharSequence text = tag.getAsciiSequence();
+            out.append(" \"");
+            for (int ct = 0; ct < text.length(); ct++) {
+                char c = text.charAt(ct);
+                // control characters are not written to the log
+                out.append(((c < 0x20) || (c == 0x7F)) ? '.' : c);
+            }
+            out.append('"');
+            break;
+        default:
+        }
+    }
+
+    private static void writeTagId(Appendable out, int tagId) throws IOException {
+        int size = TLVWriter.tagSize(tagId);
+        for (int shift = (size - 1) * 8; shift >= 0; shift -= 8) {
+            int b = (tagId >>> shift) & 0xFF;
+            out.append(UPPER_HEX[b >>> 4]);
+            out.append(UPPER_HEX[b & 0x0F]);
+        }
+    }
+
+    private static void writeInt(Appendable out, int value) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(value);
+            return;
+        }
+        if (value >= 10) {
+            writeInt(out, value / 10);
+        }
+        out.append((char) ('0' + (value % 10)));
+    }
+
+    private static void writeIndent(Appendable out, int count) throws IOException {
+        for (int ct = 0; ct < count; ct++) {
+            out.append(' ');
+        }
+    }
+
+    /**
+     * Configuration of a {@link TLVFormatter}. By default the style is {@link Style#TREE}, the children are
+     * indented by 2 spaces and the tags 5A (PAN), 57 (Track 2 Equivalent Data) and 9F1F (Track 1 Discretionary Data)
+     * are masked.
+     */
+    public static final class Builder {
+
+        private Style style = Style.TREE;
+        private int indent = 2;
+        private char maskChar = '*';
+        private int[] maskedTags = DEFAULT_MASKED_TAGS.clone();
+
+        private Builder() {
+        }
+
+        public Builder style(Style style) {
+            if (style == null) {
+                throw new IllegalArgumentException("style is required.");
+            }
+            this.style = style;
+            return this;
+        }
+
+        /**
+         * @param indent number of spaces of each level of {@link Style#TREE}.
+         * @return
+         */
+        public Builder indent(int indent) {
+            if (indent < 0) {
+                throw new IllegalArgumentException("indent must not be negative.");
+            }
+            this.indent = indent;
+            return this;
+        }
+
+        /**
+         * @param tagIds the tags whose values are masked, added to the tags already masked.
+         * @return
+         */
+        public Builder mask(int... tagIds) {
+            int[] masked = Arrays.copyOf(maskedTags, maskedTags.length + tagIds.length);
+            System.arraycopy(tagIds, 0, masked, maskedTags.length, tagIds.length);
+            this.maskedTags = masked;
+            return this;
+        }
+
+        /**
+         * @param tags the tags whose values are masked, added to the tags already masked.
+         * @return
+         */
+        public Builder mask(TagTLVEnum... tags) {
+            for (TagTLVEnum tag : tags) {
+                mask(tag.getId());
+            }
+            return this;
+        }
+
+        /**
+         * Removes the masked tags, including the default ones.
+         *
+         * @return
+         */
+        public Builder noMask() {
+            this.maskedTags = new int[0];
+            return this;
+        }
+
+        public Builder maskChar(char maskChar) {
+            this.maskChar = maskChar;
+            return this;
+        }
+
+        public TLVFormatter build() {
+            return new TLVFormatter(this);
+        }
+
+    }
+
+}
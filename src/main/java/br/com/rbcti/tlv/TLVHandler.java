@@ -0,0 +1,39 @@
+package br.com.rbcti.tlv;
+
+/**
+ * Receives the data objects found by {@link TLVParser}, in the order they appear in the data.<br>
+ * Offsets are absolute indexes of the parsed array or buffer and lengths are the lengths of the values.
+ *
+ * @see TLVParser
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public interface TLVHandler {
+
+    /**
+     * Called for a constructed data object, before its children.
+     *
+     * @param tagId
+     * @param offset offset of the value.
+     * @param length length of the value.
+     * @return <code>true</code> to parse the children, <code>false</code> to skip the whole subtree.
+     */
+    boolean startConstructed(int tagId, int offset, int length);
+
+    /**
+     * Called for a primitive data object.
+     *
+     * @param tagId
+     * @param offset offset of the value.
+     * @param length length of the value.
+     */
+    void primitive(int tagId, int offset, int length);
+
+    /**
+     * Called after the children of a constructed data object, also when the subtree was skipped.
+     *
+     * @param tagId
+     */
+    void endConstructed(int tagId);
+
+}
@@ -0,0 +1,227 @@
+package br.com.rbcti.tlv;
+
+import static br.com.rbcti.tlv.TagTLV.BYTE_LENGTH_FLAG;
+import static br.com.rbcti.tlv.TagTLV.BYTE_LENGTH_MASK;
+import static br.com.rbcti.tlv.TagTLV.NEXT_BYTE_TAG_NUMBER;
+import static br.com.rbcti.tlv.TagTLV.SECOND_BYTE_TAG_NUMBER;
+
+import java.nio.ByteBuffer;
+
+import br.com.rbcti.tlv.DecodeTLVException.Reason;
+
+/**
+ * Tag and length fields of a TLV data object.<br>
+ * All decoders read the fields through this class, so the same strict and non-strict rules apply to all of them.<br>
+ * An instance is reused for every data object of a message, it is not thread-safe.
+ *
+ * @see DecodeTLV
+ * @see TLVParser
+ * @author Renato Cunha
+ * @version 1.0
+ */
+final class TLVHeader {
+
+    static final int MAX_BYTE_LENGTH = 4;
+
+    /**
+     * Maximum number of bytes of the tag field, so the tag fits in an <code>int</code>.
+     */
+    static final int MAX_TAG_LENGTH = 4;
+
+    /**
+     * Up to 4 bytes of tag, the first byte of length and up to 4 more bytes of length.
+     */
+    static final int MAX_HEADER_LENGTH = MAX_TAG_LENGTH + 1 + MAX_BYTE_LENGTH;
+
+    private static final int INCOMPLETE = -1;
+    private static final int ERROR = -2;
+
+    int tagId;
+    int tagIdFirstByte;
+    int valueOffset;
+    int valueLength;
+
+    // length read from the length field, when the value was truncated in non-strict mode
+    boolean truncated;
+    int declaredLength;
+
+    // error of the last read, no message is built until the error is thrown
+    Reason error;
+    int errorOffset;
+    long errorLimit;
+
+    /**
+     * Reads the tag and length fields starting at the absolute index <code>offset</code>.
+     * The data object must end before <code>end</code>.<br>
+     * In non-strict mode, a length greater than the available data is fixed to the available data.
+     *
+     * @param data
+     * @param offset
+     * @param end
+     * @param strict
+     * @throws DecodeTLVException
+     */
+    void read(ByteBuffer data, int offset, int end, boolean strict) throws DecodeTLVException {
+        if (!tryRead(data, offset, end, strict)) {
+            throw exception();
+        }
+    }
+
+    /**
+     * Reads the fields as {@link #read(ByteBuffer, int, int, boolean)}, but an error is only recorded
+     * in {@link #error}, {@link #errorOffset} and {@link #errorLimit}.
+     *
+     * @return <code>false</code> if the data is invalid.
+     */
+    boolean tryRead(ByteBuffer data, int offset, int end, boolean strict) {
+
+        truncated = false;
+
+        if (readFields(data, offset, end, false) == ERROR) {
+            return false;
+        }
+
+        if ((end - valueOffset) < valueLength) {
+            if (strict) {
+                return fail(Reason.VALUE_TRUNCATED, offset, 0);
+            }
+
+            // fix the size when the content size is less than the value entered
+            truncated = true;
+            declaredLength = valueLength;
+            valueLength = end - valueOffset;
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads the tag and length fields starting at the absolute index <code>offset</code>, when all of
+     * them are before <code>end</code>. The value is not checked, so it may end after <code>end</code>.
+     *
+     * @param data
+     * @param offset
+     * @param end
+     * @return <code>false</code> if the data ends in the middle of the tag and length fields.
+     * @throws DecodeTLVException
+     */
+    boolean readPartial(ByteBuffer data, int offset, int end) throws DecodeTLVException {
+        int result = readFields(data, offset, end, true);
+        if (result == ERROR) {
+            throw exception();
+        }
+        return result != INCOMPLETE;
+    }
+
+    /**
+     * @return the exception of the last error.
+     */
+    DecodeTLVException exception() {
+        return new DecodeTLVException(error, errorOffset, tagId, errorLimit);
+    }
+
+    private boolean fail(Reason reason, int offset, long limit) {
+        this.error = reason;
+        this.errorOffset = offset;
+        this.errorLimit = limit;
+        return false;
+    }
+
+    private int readFields(ByteBuffer data, int offset, int end, boolean partial) {
+
+        final int start = offset;
+
+        int tagId = data.get(offset) & 0xFF;
+        this.tagId = tagId;
+        this.tagIdFirstByte = tagId;
+
+        offset++;
+
+        if (end == offset) {
+            if (partial) {
+                return INCOMPLETE;
+            }
+            fail(Reason.TAG_WITHOUT_LENGTH, start, 0);
+            return ERROR;
+        }
+
+        if ((tagId & SECOND_BYTE_TAG_NUMBER) == SECOND_BYTE_TAG_NUMBER) {
+            // It means that the second byte also identifies the tag, as each following byte with bit 8 set
+            int tagLength = 1;
+            int tagByte;
+
+            do {
+                if (tagLength == MAX_TAG_LENGTH) {
+                    fail(Reason.TAG_TOO_LONG, start, MAX_TAG_LENGTH);
+                    return ERROR;
+                }
+
+                tagByte = data.get(offset) & 0xFF;
+                tagId = (tagId << 8) | tagByte;
+                this.tagId = tagId;
+                tagLength++;
+                offset++;
+
+                if (end == offset) {
+                    if (partial) {
+                        return INCOMPLETE;
+                    }
+                    fail(Reason.TAG_WITHOUT_LENGTH, start, 0);
+                    return ERROR;
+                }
+            } while ((tagByte & NEXT_BYTE_TAG_NUMBER) == NEXT_BYTE_TAG_NUMBER);
+        }
+
+        // Get object size
+        int len = data.get(offset) & 0xFF;
+        offset++;
+
+        if ((len & BYTE_LENGTH_FLAG) == BYTE_LENGTH_FLAG) {
+            int numberBytesLength = len & BYTE_LENGTH_MASK;
+
+            if (numberBytesLength > MAX_BYTE_LENGTH) {
+                fail(Reason.LENGTH_FIELD_TOO_LONG, start, MAX_BYTE_LENGTH);
+                return ERROR;
+            }
+
+            if ((end - offset) < numberBytesLength) {
+                if (partial) {
+                    return INCOMPLETE;
+                }
+                fail(Reason.LENGTH_FIELD_INCOMPLETE, start, 0);
+                return ERROR;
+            }
+
+            long lengthRead = 0L;
+
+            for (int ct = 0; ct < numberBytesLength; ct++) {
+                lengthRead = (lengthRead << 8) | (data.get(offset) & 0xFFL);
+                offset++;
+            }
+
+            if (lengthRead > Integer.MAX_VALUE) {
+                fail(Reason.LENGTH_TOO_LARGE, start, Integer.MAX_VALUE);
+                return ERROR;
+            }
+
+            len = (int) lengthRead;
+        }
+
+        this.valueOffset = offset;
+        this.valueLength = len;
+
+        return offset;
+    }
+
+    /**
+     * @return absolute index of the byte following the value.
+     */
+    int end() {
+        return valueOffset + valueLength;
+    }
+
+    boolean isConstructed() {
+        return ((tagIdFirstByte & TagTLV.CONSTRUCTED_DATA_OBJECT) == TagTLV.CONSTRUCTED_DATA_OBJECT);
+    }
+
+}
@@ -0,0 +1,216 @@
+package br.com.rbcti.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import br.com.rbcti.tlv.DecodeTLVException.Reason;
+
+/**
+ * Decodes data in TLV (Tag Length Value) format that arrives in parts, like the reads of a socket.<br>
+ * The bytes are given to {@link #feed(ByteBuffer)} as they arrive. The partial tag and length fields are kept
+ * between the calls, and each top-level {@link TagTLV} is delivered to the consumer as soon as its last byte
+ * is received. The value of each top-level data object is copied once, the delivered tags are views over that copy.<br>
+ * The buffer of a data object grows as its bytes arrive, and a declared length greater than
+ * {@link TLVDecoder#getMaxValueBytes()} is rejected as soon as the length field is read.<br>
+ * The offsets of the exceptions are offsets in the stream, counted from the first byte fed, and all errors are
+ * reported to the listener of the decoder.<br>
+ * <br>
+ * After a {@link DecodeTLVException} the decoder must be {@link #reset()}.<br>
+ * This class is not thread-safe.
+ *
+ * @see DecodeTLV
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public class TLVIncrementalDecoder {
+
+    private static final int INITIAL_FRAME_LENGTH = 256;
+
+    private final TLVDecoder decoder;
+    private final Consumer<TagTLV> consumer;
+
+    private final TLVHeader header = new TLVHeader();
+    private final byte[] headerBytes = new byte[TLVHeader.MAX_HEADER_LENGTH];
+    private final ByteBuffer headerBuffer = ByteBuffer.wrap(headerBytes);
+    private int headerCount;
+
+    // the frame grows as its bytes arrive, the declared length is not allocated up front
+    private byte[] frame;
+    private int frameLength;
+    private int frameCount;
+
+    // offset in the stream of the first byte of the current data object
+    private long offset;
+
+    public TLVIncrementalDecoder(Consumer<TagTLV> consumer) {
+        this(false, consumer);
+    }
+
+    /**
+     * @param strict   the children of each top-level data object are decoded with the rules of
+     *                 {@link DecodeTLV#DecodeTLV(boolean)}.
+     * @param consumer receives each top-level data object.
+     */
+    public TLVIncrementalDecoder(boolean strict, Consumer<TagTLV> consumer) {
+        this(TLVDecoder.builder().strict(strict).zeroCopy(true).build(), consumer);
+    }
+
+    /**
+     * @param decoder  decodes each top-level data object, its limits are applied to each one. A zero-copy decoder
+     *                 avoids copying the value a second time.
+     * @param consumer receives each top-level data object.
+     */
+    public TLVIncrementalDecoder(TLVDecoder decoder, Consumer<TagTLV> consumer) {
+        if (decoder == null) {
+            throw new IllegalArgumentException("decoder must not be null.");
+        }
+        this.decoder = decoder;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Consumes all remaining bytes of <code>chunk</code>. The position of <code>chunk</code> is moved to its limit.
+     *
+     * @param chunk
+     * @throws DecodeTLVException
+     */
+    public void feed(ByteBuffer chunk) throws DecodeTLVException {
+
+        while (chunk.hasRemaining()) {
+
+            if (frame == null) {
+                headerBytes[headerCount] = chunk.get();
+                headerCount++;
+
+                try {
+                    if (!header.readPartial(headerBuffer, 0, headerCount)) {
+                        continue;
+                    }
+                } catch (DecodeTLVException e) {
+                    throw failed(e.getReason(), offset, e.getTagId(), e.getLimit(), headerCount);
+                }
+
+                if (header.valueLength > decoder.getMaxValueBytes()) {
+                    throw failed(Reason.VALUE_BYTES_LIMIT, offset, header.tagId, decoder.getMaxValueBytes(), headerCount);
+                }
+                if (header.valueLength > Integer.MAX_VALUE - headerCount) {
+                    throw failed(Reason.LENGTH_TOO_LARGE, offset, header.tagId, Integer.MAX_VALUE - headerCount, headerCount);
+                }
+
+                frameLength = headerCount + header.valueLength;
+                frame = new byte[Math.min(frameLength, INITIAL_FRAME_LENGTH)];
+                System.arraycopy(headerBytes, 0, frame, 0, headerCount);
+                frameCount = headerCount;
+                headerCount = 0;
+            }
+
+            int count = Math.min(chunk.remaining(), frameLength - frameCount);
+            if (frameCount + count > frame.length) {
+                frame = Arrays.copyOf(frame, (int) Math.min(frameLength, Math.max(2L * frame.length, frameCount + count)));
+            }
+            chunk.get(frame, frameCount, count);
+            frameCount += count;
+
+            if (frameCount == frameLength) {
+                byte[] completeFrame = frame;
+                long frameOffset = offset;
+                offset += frameLength;
+                frame = null;
+                frameLength = 0;
+                frameCount = 0;
+                deliver(completeFrame, frameOffset);
+            }
+        }
+    }
+
+    public void feed(byte[] data, int offset, int length) throws DecodeTLVException {
+        feed(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * Indicates the end of the data.<br>
+     * An incomplete data object is decoded as {@link DecodeTLV} decodes truncated data: in strict mode a
+     * {@link DecodeTLVException} is thrown, otherwise the value is fixed to the received bytes.
+     *
+     * @throws DecodeTLVException
+     */
+    public void finish() throws DecodeTLVException {
+        byte[] partialFrame = null;
+        long frameOffset = offset;
+
+        if (frame != null) {
+            partialFrame = Arrays.copyOf(frame, frameCount);
+        } else if (headerCount > 0) {
+            partialFrame = Arrays.copyOf(headerBytes, headerCount);
+        }
+
+        reset();
+
+        if (partialFrame != null) {
+            if (decoder.isStrict()) {
+                throw failed(Reason.INCOMPLETE_DATA, frameOffset, -1, 0, partialFrame.length);
+            }
+            deliver(partialFrame, frameOffset);
+        }
+    }
+
+    /**
+     * Discards the bytes of an incomplete data object. They are still counted in the offset of the stream.
+     */
+    public void reset() {
+        offset += getPendingBytes();
+        headerCount = 0;
+        frame = null;
+        frameLength = 0;
+        frameCount = 0;
+    }
+
+    /**
+     * @return <code>true</code> when the bytes received so far end in the middle of a data object.
+     */
+    public boolean isPartial() {
+        return (frame != null) || (headerCount > 0);
+    }
+
+    /**
+     * @return number of received bytes of the incomplete data object.
+     */
+    public int getPendingBytes() {
+        return (frame != null) ? frameCount : headerCount;
+    }
+
+    /**
+     * @return number of bytes consumed from the stream, which is the offset of the next byte.
+     */
+    public long getStreamOffset() {
+        return offset + getPendingBytes();
+    }
+
+    private void deliver(byte[] completeFrame, long frameOffset) throws DecodeTLVException {
+        List<TagTLV> tags;
+        try {
+            tags = decoder.decode(completeFrame);
+        } catch (DecodeTLVException e) {
+            // already reported to the listener by the decoder, only the offset is moved to the stream
+            long errorOffset = (e.getLongOffset() < 0) ? -1 : frameOffset + e.getLongOffset();
+            throw new DecodeTLVException(e.getReason(), errorOffset, e.getTagId(), e.getLimit());
+        }
+        for (TagTLV tag : tags) {
+            consumer.accept(tag);
+        }
+    }
+
+    /**
+     * Reports an error found before the data object is decoded to the listener of the decoder, as {@link TLVDecoder}
+     * reports its errors. The check of the header takes no measurable time.
+     *
+     * @return the exception with the offset of the data object in the stream.
+     */
+    private DecodeTLVException failed(Reason reason, long frameOffset, int tagId, long limit, int bytes) {
+        decoder.getListener().failed(reason, bytes, 0L);
+        return new DecodeTLVException(reason, frameOffset, tagId, limit);
+    }
+
+}
@@ -0,0 +1,413 @@
+package br.com.rbcti.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact result of decoding data in TLV (Tag Length Value) format.<br>
+ * Instead of a tree of {@link TagTLV} objects, each data object is a node stored in parallel <code>int</code> arrays
+ * (tag, first byte of the tag, value offset, value length, parent, next sibling and depth) over the original buffer.
+ * The nodes are numbered in the order they appear in the data, so a parent always comes before its children.<br>
+ * A {@link TagTLV} view of a node is built on demand by {@link #getTag(int)}.<br>
+ * The nodes of each tag are also indexed while the data is decoded, so {@link #find(int)}, {@link #findAll(int)}
+ * and {@link #find(String)} do not scan the tree.<br>
+ * <br>
+ * An instance can be reused for many messages, the arrays only grow. This class is not thread-safe.
+ *
+ * @see TLVReader
+ * @see DecodeTLV
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public class TLVIndex {
+
+    private static final int INITIAL_CAPACITY = 32;
+    private static final int INITIAL_DEPTH = 8;
+
+    private final TLVReader reader;
+
+    private ByteBuffer data;
+    private int size;
+
+    private int[] tagIds = new int[INITIAL_CAPACITY];
+    private int[] tagIdFirstBytes = new int[INITIAL_CAPACITY];
+    private int[] valueOffsets = new int[INITIAL_CAPACITY];
+    private int[] valueLengths = new int[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private int[] nextSiblings = new int[INITIAL_CAPACITY];
+    private int[] depths = new int[INITIAL_CAPACITY];
+
+    // next node with the same tag
+    private int[] nextSameTags = new int[INITIAL_CAPACITY];
+    // last node with the same tag, only set in the first node of each tag
+    private int[] lastSameTags = new int[INITIAL_CAPACITY];
+    // first node of each tag
+    private final IntIntMap firstNodes = new IntIntMap();
+
+    // last node found in each level while indexing
+    private int[] lastNodes = new int[INITIAL_DEPTH];
+
+    public TLVIndex() {
+        this(false);
+    }
+
+    public TLVIndex(boolean strict) {
+        this.reader = new TLVReader(strict);
+    }
+
+    public void index(byte[] data) throws DecodeTLVException {
+        index(ByteBuffer.wrap(data), 0, data.length);
+    }
+
+    /**
+     * Indexes the remaining bytes of <code>data</code> (from position to limit).
+     * The position and limit of <code>data</code> are not changed.
+     *
+     * @param data
+     * @throws DecodeTLVException
+     */
+    public void index(ByteBuffer data) throws DecodeTLVException {
+        index(data, data.position(), data.remaining());
+    }
+
+    /**
+     * Indexes <code>length</code> bytes of <code>data</code> starting at the absolute index <code>offset</code>.
+     * The position and limit of <code>data</code> are not changed. The previous content of the index is discarded.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @throws DecodeTLVException
+     */
+    public void index(ByteBuffer data, int offset, int length) throws DecodeTLVException {
+
+        reset();
+
+        reader.reset(data, offset, length);
+        this.data = data;
+
+        int parent = -1;
+        lastNodes[0] = -1;
+
+        try {
+            while (true) {
+                if (reader.next()) {
+                    int depth = reader.depth();
+                    int node = add(parent, depth);
+
+                    int previous = lastNodes[depth];
+                    if (previous >= 0) {
+                        nextSiblings[previous] = node;
+                    }
+                    lastNodes[depth] = node;
+
+                    if (reader.isConstructed()) {
+                        reader.enter();
+                        parent = node;
+
+                        if (depth + 1 == lastNodes.length) {
+                            lastNodes = Arrays.copyOf(lastNodes, lastNodes.length * 2);
+                        }
+                        lastNodes[depth + 1] = -1;
+                    }
+                } else if (reader.depth() > 0) {
+                    reader.exit();
+                    parent = parents[parent];
+                } else {
+                    break;
+                }
+            }
+        } catch (DecodeTLVException e) {
+            reset();
+            throw e;
+        }
+    }
+
+    /**
+     * Discards the content of the index. The arrays are kept to be reused.
+     */
+    public void reset() {
+        size = 0;
+        data = null;
+        firstNodes.clear();
+    }
+
+    /**
+     * @return number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the indexed buffer.
+     */
+    public ByteBuffer data() {
+        return data;
+    }
+
+    public int tagId(int node) {
+        checkNode(node);
+        return tagIds[node];
+    }
+
+    public int tagIdFirstByte(int node) {
+        checkNode(node);
+        return tagIdFirstBytes[node];
+    }
+
+    public boolean isConstructed(int node) {
+        checkNode(node);
+        return ((tagIdFirstBytes[node] & TagTLV.CONSTRUCTED_DATA_OBJECT) == TagTLV.CONSTRUCTED_DATA_OBJECT);
+    }
+
+    /**
+     * @return absolute index of the value in {@link #data()}.
+     */
+    public int valueOffset(int node) {
+        checkNode(node);
+        return valueOffsets[node];
+    }
+
+    public int valueLength(int node) {
+        checkNode(node);
+        return valueLengths[node];
+    }
+
+    /**
+     * @return the parent node or -1 for a top-level node.
+     */
+    public int parent(int node) {
+        checkNode(node);
+        return parents[node];
+    }
+
+    /**
+     * @return the next node with the same parent or -1.
+     */
+    public int nextSibling(int node) {
+        checkNode(node);
+        return nextSiblings[node];
+    }
+
+    /**
+     * @return the first child node or -1.
+     */
+    public int firstChild(int node) {
+        checkNode(node);
+        int child = node + 1;
+        return ((child < size) && (parents[child] == node)) ? child : -1;
+    }
+
+    /**
+     * @return level of the node, the top level is 0.
+     */
+    public int depth(int node) {
+        checkNode(node);
+        return depths[node];
+    }
+
+    /**
+     * Returns a read-only view of the value of a node. No data is copied.
+     *
+     * @param node
+     * @return
+     */
+    public ByteBuffer value(int node) {
+        checkNode(node);
+        return ByteUtil.slice(data, valueOffsets[node], valueLengths[node]);
+    }
+
+    /**
+     * Copies the value of a node into <code>dest</code> starting at <code>destOffset</code>.
+     *
+     * @param node
+     * @param dest
+     * @param destOffset
+     * @return number of bytes copied.
+     */
+    public int copyValueTo(int node, byte[] dest, int destOffset) {
+        checkNode(node);
+        ByteUtil.copy(data, valueOffsets[node], dest, destOffset, valueLengths[node]);
+        return valueLengths[node];
+    }
+
+    /**
+     * Builds a {@link TagTLV} of a node, with its children. The tags are views over {@link #data()},
+     * as the ones decoded by {@link DecodeTLV} in zero-copy mode.
+     *
+     * @param node
+     * @return
+     */
+    public TagTLV getTag(int node) {
+        checkNode(node);
+
+        TagTLV tag = newTag(node);
+
+        // the nodes of the subtree follow the node, a stack of the last tag of each level links them without recursion
+        TagTLV[] levels = new TagTLV[INITIAL_DEPTH];
+        levels[0] = tag;
+        int depth = depths[node];
+
+        for (int child = node + 1; (child < size) && (depths[child] > depth); child++) {
+            int level = depths[child] - depth;
+            if (level == levels.length) {
+                levels = Arrays.copyOf(levels, level * 2);
+            }
+            TagTLV childTag = newTag(child);
+            levels[level - 1].addChildTag(childTag);
+            levels[level] = childTag;
+        }
+
+        return tag;
+    }
+
+    /**
+     * Builds the {@link TagTLV} tree of all top-level nodes, the same tree returned by {@link DecodeTLV}
+     * in zero-copy mode.
+     *
+     * @return
+     */
+    public List<TagTLV> getTags() {
+        List<TagTLV> tags = new ArrayList<TagTLV>();
+        for (int node = (size > 0) ? 0 : -1; node >= 0; node = nextSiblings[node]) {
+            tags.add(getTag(node));
+        }
+        return tags;
+    }
+
+    /**
+     * @param tagId
+     * @return the first node with the tag or -1.
+     */
+    public int find(int tagId) {
+        return firstNodes.get(tagId);
+    }
+
+    public int find(TagTLVEnum tag) {
+        return find(tag.getId());
+    }
+
+    /**
+     * @param node
+     * @return the next node with the same tag of <code>node</code> or -1.
+     */
+    public int findNext(int node) {
+        checkNode(node);
+        return nextSameTags[node];
+    }
+
+    /**
+     * @param tagId
+     * @return all nodes with the tag, in the order they appear in the data.
+     */
+    public int[] findAll(int tagId) {
+        int count = 0;
+        for (int node = find(tagId); node >= 0; node = nextSameTags[node]) {
+            count++;
+        }
+
+        int[] nodes = new int[count];
+        count = 0;
+        for (int node = find(tagId); node >= 0; node = nextSameTags[node]) {
+            nodes[count++] = node;
+        }
+        return nodes;
+    }
+
+    /**
+     * Finds the first node with a path of tags from the top level.
+     *
+     * @param path hexadecimal tags separated by <code>/</code>, for example <code>6F/A5/BF0C/9F4D</code>.
+     * @return the node or -1.
+     */
+    public int find(String path) {
+        return find(TLVPath.parse(path));
+    }
+
+    /**
+     * Finds the first node with a path of tags from the top level.
+     *
+     * @param path tags from the top level to the data object.
+     * @return the node or -1.
+     */
+    public int find(int... path) {
+        if (path.length == 0) {
+            return -1;
+        }
+
+        int last = path.length - 1;
+
+        for (int node = find(path[last]); node >= 0; node = nextSameTags[node]) {
+            if (depths[node] != last) {
+                continue;
+            }
+
+            int ancestor = parents[node];
+            int step = last - 1;
+
+            while ((ancestor >= 0) && (tagIds[ancestor] == path[step])) {
+                ancestor = parents[ancestor];
+                step--;
+            }
+
+            if (ancestor < 0) {
+                return node;
+            }
+        }
+
+        return -1;
+    }
+
+    private int add(int parent, int depth) {
+        if (size == tagIds.length) {
+            int capacity = size * 2;
+            tagIds = Arrays.copyOf(tagIds, capacity);
+            tagIdFirstBytes = Arrays.copyOf(tagIdFirstBytes, capacity);
+            valueOffsets = Arrays.copyOf(valueOffsets, capacity);
+            valueLengths = Arrays.copyOf(valueLengths, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            nextSameTags = Arrays.copyOf(nextSameTags, capacity);
+            lastSameTags = Arrays.copyOf(lastSameTags, capacity);
+        }
+
+        int node = size;
+
+        tagIds[node] = reader.tagId();
+        tagIdFirstBytes[node] = reader.tagIdFirstByte();
+        valueOffsets[node] = reader.valueOffset();
+        valueLengths[node] = reader.valueLength();
+        parents[node] = parent;
+        nextSiblings[node] = -1;
+        depths[node] = depth;
+        nextSameTags[node] = -1;
+
+        int first = firstNodes.get(tagIds[node]);
+        if (first < 0) {
+            firstNodes.put(tagIds[node], node);
+            lastSameTags[node] = node;
+        } else {
+            nextSameTags[lastSameTags[first]] = node;
+            lastSameTags[first] = node;
+        }
+
+        size++;
+
+        return node;
+    }
+
+    private TagTLV newTag(int node) {
+        return new TagTLV(tagIds[node], tagIdFirstBytes[node], data, valueOffsets[node], valueLengths[node]);
+    }
+
+    private void checkNode(int node) {
+        if ((node < 0) || (node >= size)) {
+            throw new IndexOutOfBoundsException("node=" + node + ", size=" + size);
+        }
+    }
+
+}
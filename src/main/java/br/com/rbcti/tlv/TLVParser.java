@@ -0,0 +1,136 @@
+package br.com.rbcti.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Event based parser of data in TLV (Tag Length Value) format.<br>
+ * The data is read once and the data objects are reported to a {@link TLVHandler}.
+ * No tree is built and nothing is allocated for each data object.<br>
+ * The length of the data objects follows the same strict and non-strict rules of {@link DecodeTLV}.<br>
+ * The constructed data objects are entered with an explicit stack, not by recursion, so the nesting of the data is
+ * limited by <code>maxDepth</code> and not by the stack of the thread.
+ *
+ * @see TLVHandler
+ * @see DecodeTLV
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public class TLVParser {
+
+    private static final int INITIAL_DEPTH = 8;
+
+    private final boolean strict;
+    private final int maxDepth;
+
+    public TLVParser() {
+        this(false);
+    }
+
+    public TLVParser(boolean strict) {
+        this(strict, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param strict
+     * @param maxDepth maximum number of nested levels, the top level is the level 1. A deeper data object is an error
+     *                 of {@link DecodeTLVException.Reason#DEPTH_LIMIT}.
+     */
+    public TLVParser(boolean strict, int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be greater than zero.");
+        }
+        this.strict = strict;
+        this.maxDepth = maxDepth;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void parse(byte[] data, TLVHandler handler) throws DecodeTLVException {
+        parseRange(ByteBuffer.wrap(data), 0, data.length, new TLVHeader(), handler);
+    }
+
+    /**
+     * Parses the remaining bytes of <code>data</code> (from position to limit).
+     * The position and limit of <code>data</code> are not changed.
+     *
+     * @param data
+     * @param handler
+     * @throws DecodeTLVException
+     */
+    public void parse(ByteBuffer data, TLVHandler handler) throws DecodeTLVException {
+        parseRange(data, data.position(), data.limit(), new TLVHeader(), handler);
+    }
+
+    /**
+     * Parses <code>length</code> bytes of <code>data</code> starting at the absolute index <code>offset</code>.
+     * The position and limit of <code>data</code> are not changed.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @param handler
+     * @throws DecodeTLVException
+     */
+    public void parse(ByteBuffer data, int offset, int length, TLVHandler handler) throws DecodeTLVException {
+        if ((offset < 0) || (length < 0) || (offset > data.limit() - length)) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", limit=" + data.limit());
+        }
+        parseRange(data, offset, offset + length, new TLVHeader(), handler);
+    }
+
+    private void parseRange(ByteBuffer data, int offset, int end, TLVHeader header, TLVHandler handler) throws DecodeTLVException {
+
+        // ends and tags of the constructed data objects being parsed, indexed by depth
+        int[] ends = new int[INITIAL_DEPTH];
+        int[] tagIds = new int[INITIAL_DEPTH];
+        int depth = 0;
+
+        for (;;) {
+            if (offset >= end) {
+                if (depth == 0) {
+                    return;
+                }
+                depth--;
+                handler.endConstructed(tagIds[depth]);
+                // the value of the parent ends with its last child
+                offset = end;
+                end = ends[depth];
+                continue;
+            }
+
+            if (depth >= maxDepth) {
+                throw new DecodeTLVException(DecodeTLVException.Reason.DEPTH_LIMIT, offset, -1, maxDepth);
+            }
+
+            header.read(data, offset, end, strict);
+
+            int tagId = header.tagId;
+            int valueOffset = header.valueOffset;
+            int len = header.valueLength;
+
+            if (header.isConstructed()) {
+                if (handler.startConstructed(tagId, valueOffset, len)) {
+                    if (depth == ends.length) {
+                        ends = Arrays.copyOf(ends, depth * 2);
+                        tagIds = Arrays.copyOf(tagIds, depth * 2);
+                    }
+                    ends[depth] = end;
+                    tagIds[depth] = tagId;
+                    depth++;
+                    offset = valueOffset;
+                    end = valueOffset + len;
+                    continue;
+                }
+                handler.endConstructed(tagId);
+            } else {
+                handler.primitive(tagId, valueOffset, len);
+            }
+
+            offset = valueOffset + len;
+        }
+    }
+
+}
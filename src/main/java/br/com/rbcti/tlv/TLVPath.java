@@ -0,0 +1,55 @@
+package br.com.rbcti.tlv;
+
+/**
+ * Paths of tags written as hexadecimal tags separated by <code>/</code>, from the top level
+ * to the data object. Example: <code>6F/A5/BF0C/9F4D</code>.
+ *
+ * @author Renato Cunha
+ * @version 1.0
+ */
+final class TLVPath {
+
+    private TLVPath() {
+    }
+
+    static int[] parse(String path) {
+
+        if ((path == null) || path.isEmpty()) {
+            throw new IllegalArgumentException("Empty tag path.");
+        }
+
+        String[] steps = path.split("/", -1);
+        int[] tagIds = new int[steps.length];
+
+        for (int ct = 0; ct < steps.length; ct++) {
+            tagIds[ct] = parseTag(steps[ct], path);
+        }
+
+        return tagIds;
+    }
+
+    /**
+     * @return the tag of a step, written with 2, 4, 6 or 8 hexadecimal digits and no sign.
+     */
+    static int parseTag(String step, String path) {
+        step = step.trim();
+
+        int length = step.length();
+        if ((length == 0) || (length > 8) || ((length & 1) != 0)) {
+            throw new IllegalArgumentException("Invalid tag '" + step + "' in path " + path);
+        }
+
+        int tagId = 0;
+        for (int ct = 0; ct < length; ct++) {
+            char c = step.charAt(ct);
+            // only ASCII digits, Character.digit also accepts other scripts
+            int digit = (c < 128) ? Character.digit(c, 16) : -1;
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid tag '" + step + "' in path " + path);
+            }
+            tagId = (tagId << 4) | digit;
+        }
+        return tagId;
+    }
+
+}
@@ -0,0 +1,402 @@
+package br.com.rbcti.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decodes a stream of chunks of data in TLV (Tag Length Value) format and publishes each top-level {@link TagTLV}
+ * to one subscriber, with flow control.<br>
+ * The chunks may end anywhere, they are decoded by a {@link TLVIncrementalDecoder} on the configured
+ * {@link Executor}, one task at a time. A chunk is only decoded when the subscriber has demand, and new chunks are
+ * requested from the upstream publisher as the buffered ones are decoded, so at most
+ * {@link Builder#bufferSize(int)} chunks and the tags of one chunk are held.
+ *
+ * <pre>
+ * TLVProcessor processor = TLVProcessor.builder()
+ *         .decoder(TLVDecoder.builder().strict(true).zeroCopy(true).build())
+ *         .executor(executor)
+ *         .build();
+ * socketPublisher.subscribe(processor);
+ * processor.subscribe(tagSubscriber);
+ * </pre>
+ *
+ * A chunk must not be changed after it is published to the processor. An invalid data object cancels the upstream
+ * subscription and ends the stream with a {@link DecodeTLVException}, after the tags before it are delivered. An
+ * error of the upstream publisher, or any other exception thrown while decoding or by the subscriber, is delivered at
+ * once. A processor is used for one stream only.
+ *
+ * @see TLVFlow
+ * @see TLVIncrementalDecoder
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class TLVProcessor implements TLVFlow.Processor<ByteBuffer, TagTLV> {
+
+    private static final TLVFlow.Subscription NO_DEMAND = new TLVFlow.Subscription() {
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+    };
+
+    private final TLVDecoder decoder;
+    private final Executor executor;
+    private final int bufferSize;
+
+    private final Queue<ByteBuffer> chunks = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicReference<TLVFlow.Subscription> upstream = new AtomicReference<TLVFlow.Subscription>();
+    private final AtomicReference<TLVFlow.Subscriber<? super TagTLV>> subscriber = new AtomicReference<TLVFlow.Subscriber<? super TagTLV>>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger missed = new AtomicInteger();
+
+    private volatile boolean upstreamDone;
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+
+    // only used by the task that delivers the tags
+    private final Queue<TagTLV> tags = new ArrayDeque<TagTLV>();
+    private final TLVIncrementalDecoder incremental;
+    private boolean subscribed;
+    private boolean finished;
+    private boolean terminated;
+    private int decodedChunks;
+    private DecodeTLVException failure;
+
+    private TLVProcessor(Builder builder) {
+        this.decoder = builder.decoder;
+        this.executor = builder.executor;
+        this.bufferSize = builder.bufferSize;
+        this.incremental = new TLVIncrementalDecoder(decoder, tags::add);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Requests {@link Builder#bufferSize(int)} chunks from the upstream publisher.
+     */
+    @Override
+    public void onSubscribe(TLVFlow.Subscription subscription) {
+        if (subscription == null) {
+            throw new NullPointerException("subscription must not be null.");
+        }
+        if (!upstream.compareAndSet(null, subscription)) {
+            subscription.cancel();
+            return;
+        }
+        if (cancelled || (error != null)) {
+            subscription.cancel();
+            return;
+        }
+        subscription.request(bufferSize);
+    }
+
+    @Override
+    public void onNext(ByteBuffer chunk) {
+        if (chunk == null) {
+            throw new NullPointerException("chunk must not be null.");
+        }
+        chunks.offer(chunk);
+        schedule();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (throwable == null) {
+            throw new NullPointerException("throwable must not be null.");
+        }
+        if (error == null) {
+            error = throwable;
+        }
+        upstreamDone = true;
+        schedule();
+    }
+
+    /**
+     * The data object received in part, if any, is decoded as {@link TLVIncrementalDecoder#finish()} does before
+     * the stream is completed.
+     */
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        schedule();
+    }
+
+    /**
+     * Adds the only subscriber of the processor, a second subscriber receives an {@link IllegalStateException}.
+     */
+    @Override
+    public void subscribe(TLVFlow.Subscriber<? super TagTLV> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber must not be null.");
+        }
+        if (!this.subscriber.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(NO_DEMAND);
+            subscriber.onError(new IllegalStateException("The processor has already a subscriber."));
+            return;
+        }
+        schedule();
+    }
+
+    public TLVDecoder getDecoder() {
+        return decoder;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    private void schedule() {
+        if (missed.getAndIncrement() != 0) {
+            // the running task sees the change
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            if (error == null) {
+                error = e;
+            }
+            cancelUpstream();
+            drain();
+        }
+    }
+
+    private void drain() {
+        int count = 1;
+        for (;;) {
+            try {
+                deliver();
+            } catch (Throwable e) {
+                // an exception of the decoder or of the subscriber ends the stream, the counter must still be released
+                if (error == null) {
+                    error = e;
+                }
+                cancelUpstream();
+                continue;
+            }
+            count = missed.addAndGet(-count);
+            if (count == 0) {
+                return;
+            }
+        }
+    }
+
+    private void deliver() {
+        TLVFlow.Subscriber<? super TagTLV> target = subscriber.get();
+        if ((target == null) || terminated) {
+            if (terminated) {
+                chunks.clear();
+            }
+            return;
+        }
+
+        if (!subscribed) {
+            subscribed = true;
+            target.onSubscribe(new Demand());
+        }
+
+        for (;;) {
+            if (cancelled) {
+                terminate();
+                return;
+            }
+
+            Throwable throwable = error;
+            if (throwable != null) {
+                terminate();
+                target.onError(throwable);
+                return;
+            }
+
+            if (!tags.isEmpty()) {
+                if (requested.get() == 0L) {
+                    return;
+                }
+                TagTLV tag = tags.poll();
+                if (requested.get() != Long.MAX_VALUE) {
+                    requested.decrementAndGet();
+                }
+                target.onNext(tag);
+                continue;
+            }
+
+            // the tags decoded before the invalid data object are delivered first
+            if (failure != null) {
+                terminate();
+                target.onError(failure);
+                return;
+            }
+
+            // all chunks are queued before the upstream is done
+            boolean done = upstreamDone;
+
+            if (!chunks.isEmpty()) {
+                if (requested.get() == 0L) {
+                    return;
+                }
+                decode(chunks.poll());
+                continue;
+            }
+
+            if (done) {
+                if (!finished) {
+                    finished = true;
+                    try {
+                        incremental.finish();
+                    } catch (DecodeTLVException e) {
+                        failure = e;
+                    }
+                    continue;
+                }
+                terminate();
+                target.onComplete();
+            }
+            return;
+        }
+    }
+
+    private void decode(ByteBuffer chunk) {
+        try {
+            incremental.feed(chunk);
+        } catch (DecodeTLVException e) {
+            failure = e;
+            chunks.clear();
+            cancelUpstream();
+            return;
+        }
+
+        decodedChunks++;
+        // the chunks are requested in groups, not one at a time
+        if (decodedChunks >= Math.max(1, bufferSize - (bufferSize >> 2))) {
+            TLVFlow.Subscription subscription = upstream.get();
+            if (subscription != null) {
+                subscription.request(decodedChunks);
+            }
+            decodedChunks = 0;
+        }
+    }
+
+    private void terminate() {
+        terminated = true;
+        tags.clear();
+        chunks.clear();
+        incremental.reset();
+    }
+
+    private void cancelUpstream() {
+        TLVFlow.Subscription subscription = upstream.get();
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Subscription of the subscriber of the processor.
+     */
+    private final class Demand implements TLVFlow.Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                if (error == null) {
+                    error = new IllegalArgumentException("n must be greater than zero.");
+                }
+                cancelUpstream();
+            } else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    next = current + n;
+                    if (next < 0L) {
+                        next = Long.MAX_VALUE;
+                    }
+                } while (!requested.compareAndSet(current, next));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            cancelUpstream();
+            schedule();
+        }
+
+    }
+
+    /**
+     * Configuration of a {@link TLVProcessor}. By default the tags are decoded by a zero-copy {@link TLVDecoder}
+     * in the common pool, with 16 chunks requested at a time.
+     */
+    public static final class Builder {
+
+        private TLVDecoder decoder = TLVDecoder.builder().zeroCopy(true).build();
+        private Executor executor = ForkJoinPool.commonPool();
+        private int bufferSize = 16;
+
+        private Builder() {
+        }
+
+        /**
+         * @param decoder decodes each top-level data object, its limits are applied to each one.
+         * @return
+         */
+        public Builder decoder(TLVDecoder decoder) {
+            if (decoder == null) {
+                throw new IllegalArgumentException("decoder must not be null.");
+            }
+            this.decoder = decoder;
+            return this;
+        }
+
+        /**
+         * @param executor runs the decoding and calls the subscriber, one task at a time.
+         * @return
+         */
+        public Builder executor(Executor executor) {
+            if (executor == null) {
+                throw new IllegalArgumentException("executor must not be null.");
+            }
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @param bufferSize number of chunks requested from the upstream publisher before any is decoded.
+         * @return
+         */
+        public Builder bufferSize(int bufferSize) {
+            if (bufferSize < 1) {
+                throw new IllegalArgumentException("bufferSize must be greater than zero.");
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public TLVProcessor build() {
+            return new TLVProcessor(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,491 @@
+package br.com.rbcti.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Set of tag path expressions compiled once and matched in one pass over TLV data.<br>
+ * An expression is a path of steps from the top level separated by <code>/</code>. A step is one or more
+ * hexadecimal tags separated by <code>|</code>, <code>*</code> for any tag or <code>**</code> for any number of
+ * levels, including none. Examples:
+ *
+ * <pre>
+ * 6F/A5/50        the 50 application label of the FCI
+ * 77|70/**&#47;9F10  any 9F10 under a 77 or 70 template
+ * &#42;&#42;/5A           the first 5A anywhere
+ * </pre>
+ *
+ * Each expression fills the slot of a {@link TLVQueryResult} with its first match, in the order of the data.
+ * The subtrees that cannot match any expression are skipped by their length, and the matching stops when all slots
+ * are filled. A query is immutable and can be shared by any number of threads, each with its own result.
+ *
+ * <pre>
+ * private static final TLVQuery QUERY = TLVQuery.compile("6F/A5/50", "70/57", "77/9F27", "77|70/**&#47;9F10");
+ * ...
+ * QUERY.match(data, result);
+ * ByteBuffer iad = result.value(3);
+ * </pre>
+ *
+ * @see TLVQueryResult
+ * @see TLVFilter
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class TLVQuery {
+
+    private final String[] expressions;
+    private final boolean strict;
+
+    // each step of each expression is a state: the step that the next tag must match
+    private final int words;
+    private final int[] stateQueries;
+    private final boolean[] stateLast;
+
+    // states reached by matching the step of the state (null for the last step) or by staying in a ** step
+    private final long[][] nextStates;
+    private final long[][] selfStates;
+
+    // states whose step matches a tag: the tags of the steps are indexed, * matches any tag
+    private final IntIntMap tagIndex;
+    private final long[][] tagStates;
+    private final long[] anyStates;
+    private final long[] descendantStates;
+
+    private final long[] initialStates;
+    private final long[][] queryStates;
+
+    private TLVQuery(Builder builder) {
+        this.expressions = builder.expressions.toArray(new String[0]);
+        this.strict = builder.strict;
+
+        List<String[]> paths = new ArrayList<String[]>();
+        int stateCount = 0;
+        for (String expression : expressions) {
+            String[] steps = parse(expression);
+            paths.add(steps);
+            stateCount += steps.length;
+        }
+
+        this.words = Math.max(1, (stateCount + 63) >>> 6);
+        this.stateQueries = new int[stateCount];
+        this.stateLast = new boolean[stateCount];
+        this.nextStates = new long[stateCount][];
+        this.selfStates = new long[stateCount][];
+        this.tagIndex = new IntIntMap(stateCount);
+        this.anyStates = new long[words];
+        this.descendantStates = new long[words];
+        this.initialStates = new long[words];
+        this.queryStates = new long[expressions.length][];
+
+        List<long[]> tagStates = new ArrayList<long[]>();
+
+        int first = 0;
+        for (int query = 0; query < expressions.length; query++) {
+            String[] steps = paths.get(query);
+            queryStates[query] = new long[words];
+
+            for (int step = 0; step < steps.length; step++) {
+                int state = first + step;
+                stateQueries[state] = query;
+                stateLast[state] = (step == steps.length - 1);
+                set(queryStates[query], state);
+
+                if ("**".equals(steps[step])) {
+                    set(descendantStates, state);
+                    selfStates[state] = closure(first, step, steps);
+                } else if ("*".equals(steps[step])) {
+                    set(anyStates, state);
+                } else {
+                    for (String alternative : steps[step].split("\\|", -1)) {
+                        int tagId = TLVPath.parseTag(alternative, expressions[query]);
+                        int index = tagIndex.get(tagId);
+                        if (index == IntIntMap.NO_VALUE) {
+                            index = tagStates.size();
+                            tagIndex.put(tagId, index);
+                            tagStates.add(new long[words]);
+                        }
+                        set(tagStates.get(index), state);
+                    }
+                }
+
+                if (!stateLast[state]) {
+                    nextStates[state] = closure(first, step + 1, steps);
+                }
+            }
+
+            or(initialStates, 0, closure(first, 0, steps));
+
+            first += steps.length;
+        }
+
+        this.tagStates = tagStates.toArray(new long[0][]);
+    }
+
+    private static String[] parse(String expression) {
+        if ((expression == null) || expression.trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty tag path.");
+        }
+
+        String[] steps = expression.split("/", -1);
+        for (int ct = 0; ct < steps.length; ct++) {
+            steps[ct] = steps[ct].trim();
+        }
+
+        if ("**".equals(steps[steps.length - 1])) {
+            throw new IllegalArgumentException("The path must end with a tag: " + expression);
+        }
+
+        for (String step : steps) {
+            if (!"*".equals(step) && !"**".equals(step)) {
+                for (String alternative : step.split("\\|", -1)) {
+                    TLVPath.parseTag(alternative, expression);
+                }
+            }
+        }
+
+        return steps;
+    }
+
+    /**
+     * @return the state of <code>step</code> and the states after it that are reached by skipping ** steps.
+     */
+    private long[] closure(int first, int step, String[] steps) {
+        long[] states = new long[words];
+        set(states, first + step);
+        while ("**".equals(steps[step])) {
+            step++;
+            set(states, first + step);
+        }
+        return states;
+    }
+
+    private static void set(long[] states, int state) {
+        states[state >>> 6] |= 1L << state;
+    }
+
+    /**
+     * Compiles the expressions, not strict.
+     *
+     * @param expressions
+     * @return
+     * @throws IllegalArgumentException if an expression is not valid.
+     */
+    public static TLVQuery compile(String... expressions) {
+        Builder builder = builder();
+        for (String expression : expressions) {
+            builder.add(expression);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return expressions.length;
+    }
+
+    /**
+     * @param slot
+     * @return the expression of the slot.
+     */
+    public String getExpression(int slot) {
+        return expressions[slot];
+    }
+
+    public boolean isStrict() {
+        return strict;
+    }
+
+    public int match(byte[] data, TLVQueryResult result) throws DecodeTLVException {
+        return match(ByteBuffer.wrap(data), 0, data.length, result);
+    }
+
+    /**
+     * Matches the remaining bytes of <code>data</code> (from position to limit). The position and limit of
+     * <code>data</code> are not changed.
+     *
+     * @param data
+     * @param result
+     * @return number of filled slots.
+     * @throws DecodeTLVException
+     */
+    public int match(ByteBuffer data, TLVQueryResult result) throws DecodeTLVException {
+        return match(data, data.position(), data.remaining(), result);
+    }
+
+    /**
+     * Matches <code>length</code> bytes of <code>data</code> starting at the absolute index <code>offset</code>,
+     * reading only the tag and length fields. The values of the slots are views over <code>data</code>.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @param result
+     * @return number of filled slots.
+     * @throws DecodeTLVException
+     */
+    public int match(ByteBuffer data, int offset, int length, TLVQueryResult result) throws DecodeTLVException {
+        if ((offset < 0) || (length < 0) || (offset > data.limit() - length)) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", limit=" + data.limit());
+        }
+
+        start(data, result);
+
+        final TLVHeader header = result.header;
+        final int size = expressions.length;
+
+        int end = offset + length;
+        int depth = 0;
+
+        while (result.found() < size) {
+            if (offset >= end) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+                offset = end;
+                end = result.ends[depth];
+                continue;
+            }
+
+            header.read(data, offset, end, strict);
+
+            result.ensureDepth(depth + 1, words);
+            boolean active = step(result, depth, header.tagId, header.tagIdFirstByte, header.valueOffset,
+                    header.valueLength, null);
+
+            int next = header.end();
+
+            if (active && header.isConstructed()) {
+                result.ends[depth] = end;
+                depth++;
+                enter(result, depth);
+                end = next;
+                offset = header.valueOffset;
+            } else {
+                // no expression can match in the value
+                offset = next;
+            }
+        }
+
+        return result.found();
+    }
+
+    /**
+     * Matches the decoded tags. The children of a tag decoded in lazy mode are only decoded when an expression can
+     * match among them.
+     *
+     * @param tags
+     * @param result
+     * @return number of filled slots.
+     */
+    public int match(List<TagTLV> tags, TLVQueryResult result) {
+        start(null, result);
+
+        final int size = expressions.length;
+
+        List<TagTLV> list = tags;
+        int index = 0;
+        int depth = 0;
+
+        while (result.found() < size) {
+            if ((list == null) || (index == list.size())) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+                @SuppressWarnings("unchecked")
+                List<TagTLV> parentList = (List<TagTLV>) result.lists[depth];
+                list = parentList;
+                index = result.indexes[depth];
+                continue;
+            }
+
+            TagTLV tag = list.get(index++);
+
+            result.ensureDepth(depth + 1, words);
+            boolean active = step(result, depth, tag.getTagId(), tag.getTagIdFirstByte(), -1, 0, tag);
+
+            if (active && tag.isConstructedObject()) {
+                result.lists[depth] = list;
+                result.indexes[depth] = index;
+                depth++;
+                enter(result, depth);
+                list = tag.getChildren();
+                index = 0;
+            }
+        }
+
+        result.finish();
+        return result.found();
+    }
+
+    private void start(ByteBuffer data, TLVQueryResult result) {
+        result.start(expressions.length, words, data);
+        System.arraycopy(initialStates, 0, result.states, 0, words);
+        Arrays.fill(result.pending, 0, words, -1L);
+        enter(result, 0);
+    }
+
+    /**
+     * Computes the states kept by the ** steps at <code>depth</code>. They are the same for all data objects of the
+     * level, so they are computed once when the level is entered.
+     */
+    private void enter(TLVQueryResult result, int depth) {
+        final long[] states = result.states;
+        final int from = depth * 2 * words;
+        final int kept = from + words;
+
+        Arrays.fill(states, kept, kept + words, 0L);
+
+        for (int word = 0; word < words; word++) {
+            long bits = states[from + word] & descendantStates[word] & result.pending[word];
+            while (bits != 0) {
+                int state = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                or(states, kept, selfStates[state]);
+            }
+        }
+    }
+
+    /**
+     * Matches a data object with the states of its depth, computing the states of its children.
+     *
+     * @return <code>false</code> if no expression can match among the children.
+     */
+    private boolean step(TLVQueryResult result, int depth, int tagId, int tagIdFirstByte, int valueOffset,
+            int valueLength, TagTLV tag) {
+
+        final long[] states = result.states;
+        final long[] pending = result.pending;
+        final int from = depth * 2 * words;
+        final int to = from + 2 * words;
+
+        int index = tagIndex.get(tagId);
+        long[] matching = (index == IntIntMap.NO_VALUE) ? null : tagStates[index];
+
+        for (int word = 0; word < words; word++) {
+            // the children keep the states of the ** steps
+            states[to + word] = states[from + words + word];
+        }
+
+        for (int word = 0; word < words; word++) {
+            long bits = anyStates[word];
+            if (matching != null) {
+                bits |= matching[word];
+            }
+            bits &= states[from + word] & pending[word];
+
+            if (bits != 0) {
+                advance(result, word, bits, to, tagId, tagIdFirstByte, valueOffset, valueLength, tag);
+            }
+        }
+
+        long active = 0L;
+        for (int word = 0; word < words; word++) {
+            active |= states[to + word] & pending[word];
+        }
+        return active != 0L;
+    }
+
+    /**
+     * Follows the states whose step matched the data object, filling the slots of the expressions that ended.
+     */
+    private void advance(TLVQueryResult result, int word, long bits, int to, int tagId, int tagIdFirstByte,
+            int valueOffset, int valueLength, TagTLV tag) {
+
+        final long[] pending = result.pending;
+
+        while (bits != 0) {
+            int state = (word << 6) + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+
+            if (!stateLast[state]) {
+                or(result.states, to, nextStates[state]);
+                continue;
+            }
+
+            int query = stateQueries[state];
+            if (!isPending(pending, query)) {
+                continue;
+            }
+
+            if (tag != null) {
+                result.found(query, tag);
+            } else {
+                result.found(query, tagId, tagIdFirstByte, valueOffset, valueLength);
+            }
+
+            // the states of a matched expression are not followed anymore
+            long[] matched = queryStates[query];
+            for (int ct = 0; ct < words; ct++) {
+                pending[ct] &= ~matched[ct];
+            }
+            bits &= pending[word];
+        }
+    }
+
+    private boolean isPending(long[] pending, int query) {
+        long[] states = queryStates[query];
+        for (int ct = 0; ct < words; ct++) {
+            if ((pending[ct] & states[ct]) != 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void or(long[] states, int offset, long[] bits) {
+        for (int ct = 0; ct < bits.length; ct++) {
+            states[offset + ct] |= bits[ct];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TLVQuery " + Arrays.toString(expressions);
+    }
+
+    /**
+     * Configuration of a {@link TLVQuery}. The slot of each expression is the order it was added.
+     */
+    public static final class Builder {
+
+        private final List<String> expressions = new ArrayList<String>();
+        private boolean strict;
+
+        private Builder() {
+        }
+
+        /**
+         * @param expression
+         * @return
+         * @throws IllegalArgumentException if the expression is not valid.
+         */
+        public Builder add(String expression) {
+            parse(expression);
+            expressions.add(expression);
+            return this;
+        }
+
+        /**
+         * @param strict when true, a length greater than the available data is an error when matching a buffer.
+         *               Otherwise the length is fixed to the available data.
+         * @return
+         */
+        public Builder strict(boolean strict) {
+            this.strict = strict;
+            return this;
+        }
+
+        public TLVQuery build() {
+            return new TLVQuery(this);
+        }
+
+    }
+
+}
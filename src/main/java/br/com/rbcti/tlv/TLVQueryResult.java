@@ -0,0 +1,212 @@
+package br.com.rbcti.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Slots filled by {@link TLVQuery}, one for each expression of the query, in the order of the expressions.<br>
+ * A slot keeps the first data object matched by its expression. An instance can be reused for many messages and
+ * queries, the arrays only grow. This class is not thread-safe.
+ *
+ * @see TLVQuery
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class TLVQueryResult {
+
+    private static final int INITIAL_DEPTH = 8;
+
+    final TLVHeader header = new TLVHeader();
+
+    private int size;
+    private int found;
+    private ByteBuffer data;
+
+    private int[] tagIds = new int[0];
+    private int[] tagIdFirstBytes = new int[0];
+    private int[] valueOffsets = new int[0];
+    private int[] valueLengths = new int[0];
+    private TagTLV[] tags = new TagTLV[0];
+
+    // two state sets of the query at each depth, the states of the level and the ones kept by ** steps,
+    // and the states of the queries not matched yet
+    long[] states = new long[0];
+    long[] pending = new long[0];
+
+    // data objects being read, indexed by depth
+    int[] ends = new int[INITIAL_DEPTH];
+    Object[] lists = new Object[INITIAL_DEPTH];
+    int[] indexes = new int[INITIAL_DEPTH];
+
+    public TLVQueryResult() {
+    }
+
+    void start(int size, int words, ByteBuffer data) {
+        if (tagIds.length < size) {
+            tagIds = new int[size];
+            tagIdFirstBytes = new int[size];
+            valueOffsets = new int[size];
+            valueLengths = new int[size];
+            tags = new TagTLV[size];
+        }
+        if (states.length < 2 * words * INITIAL_DEPTH) {
+            states = new long[2 * words * INITIAL_DEPTH];
+        }
+        if (pending.length < words) {
+            pending = new long[words];
+        }
+
+        Arrays.fill(tagIds, 0, size, -1);
+        Arrays.fill(tags, 0, size, null);
+        Arrays.fill(lists, null);
+
+        this.size = size;
+        this.found = 0;
+        this.data = data;
+    }
+
+    void ensureDepth(int depth, int words) {
+        if (states.length < 2 * (depth + 1) * words) {
+            states = Arrays.copyOf(states, states.length * 2);
+        }
+        if (depth == ends.length) {
+            int capacity = ends.length * 2;
+            ends = Arrays.copyOf(ends, capacity);
+            lists = Arrays.copyOf(lists, capacity);
+            indexes = Arrays.copyOf(indexes, capacity);
+        }
+    }
+
+    /**
+     * Fills a slot with a data object read from the data.
+     *
+     * @return number of filled slots.
+     */
+    int found(int slot, int tagId, int tagIdFirstByte, int valueOffset, int valueLength) {
+        tagIds[slot] = tagId;
+        tagIdFirstBytes[slot] = tagIdFirstByte;
+        valueOffsets[slot] = valueOffset;
+        valueLengths[slot] = valueLength;
+        return ++found;
+    }
+
+    /**
+     * Fills a slot with a decoded tag.
+     *
+     * @return number of filled slots.
+     */
+    int found(int slot, TagTLV tag) {
+        tags[slot] = tag;
+        tagIds[slot] = tag.getTagId();
+        tagIdFirstBytes[slot] = tag.getTagIdFirstByte();
+        valueOffsets[slot] = -1;
+        valueLengths[slot] = tag.getValueLength();
+        return ++found;
+    }
+
+    void finish() {
+        // the result may live longer than the decoded tags
+        Arrays.fill(lists, null);
+    }
+
+    /**
+     * @return number of slots, the number of expressions of the last query.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of filled slots.
+     */
+    public int found() {
+        return found;
+    }
+
+    public boolean isFound(int slot) {
+        checkSlot(slot);
+        return tagIds[slot] != -1;
+    }
+
+    /**
+     * @param slot
+     * @return the tag of the slot, or -1 if the slot is empty.
+     */
+    public int tagId(int slot) {
+        checkSlot(slot);
+        return tagIds[slot];
+    }
+
+    /**
+     * @param slot
+     * @return number of bytes of the value of the slot, or 0 if the slot is empty.
+     */
+    public int valueLength(int slot) {
+        return isFound(slot) ? valueLengths[slot] : 0;
+    }
+
+    /**
+     * @param slot
+     * @return a read-only view of the value of the slot, or <code>null</code> if the slot is empty.
+     */
+    public ByteBuffer value(int slot) {
+        if (!isFound(slot)) {
+            return null;
+        }
+        if (tags[slot] != null) {
+            return tags[slot].getValueBuffer();
+        }
+        return ByteUtil.slice(data, valueOffsets[slot], valueLengths[slot]);
+    }
+
+    /**
+     * @param slot
+     * @return the tag of the slot, or <code>null</code> if the slot is empty. For a query over a buffer the tag is a
+     *         view over the buffer, its children are not decoded.
+     */
+    public TagTLV getTag(int slot) {
+        if (!isFound(slot)) {
+            return null;
+        }
+        if (tags[slot] == null) {
+            tags[slot] = new TagTLV(tagIds[slot], tagIdFirstBytes[slot], data, valueOffsets[slot], valueLengths[slot]);
+        }
+        return tags[slot];
+    }
+
+    /**
+     * Copies the tags of the slots to <code>slots</code>, <code>null</code> for the empty ones.
+     *
+     * @param slots
+     * @return number of filled slots.
+     */
+    public int copyTo(TagTLV[] slots) {
+        for (int ct = 0; ct < size; ct++) {
+            slots[ct] = getTag(ct);
+        }
+        return found;
+    }
+
+    private void checkSlot(int slot) {
+        if ((slot < 0) || (slot >= size)) {
+            throw new IndexOutOfBoundsException("slot=" + slot + ", size=" + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("TLVQueryResult [");
+        for (int ct = 0; ct < size; ct++) {
+            if (ct > 0) {
+                builder.append(", ");
+            }
+            builder.append(ct);
+            builder.append('=');
+            builder.append((tagIds[ct] == -1) ? "-" : Integer.toHexString(tagIds[ct]).toUpperCase());
+        }
+        builder.append("]");
+        return builder.toString();
+    }
+
+}
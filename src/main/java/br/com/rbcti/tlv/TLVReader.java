@@ -0,0 +1,243 @@
+package br.com.rbcti.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Cursor over data in TLV (Tag Length Value) format.<br>
+ * {@link #next()} moves to the next data object of the current level. The children of a constructed
+ * data object are read after {@link #enter()}, and {@link #exit()} returns to the parent level.
+ * Nothing is allocated while reading, and an instance can be reused with {@link #reset(ByteBuffer)}.<br>
+ * The tag and length fields are read with the same rules of {@link DecodeTLV}.<br>
+ * <br>
+ * This class is not thread-safe.
+ *
+ * <pre>
+ * TLVReader reader = new TLVReader(data);
+ * while (reader.next()) {
+ *     if (reader.tagId() == 0x6F) {
+ *         reader.enter();
+ *     } else if (reader.tagId() == 0x50) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * @see DecodeTLV
+ * @see TLVParser
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public class TLVReader {
+
+    private static final int INITIAL_DEPTH = 8;
+
+    private final boolean strict;
+    private final TLVHeader header = new TLVHeader();
+
+    private ByteBuffer data;
+    private int position;
+    private int end;
+    private boolean current;
+
+    private int depth;
+    private int[] parentEnds = new int[INITIAL_DEPTH];
+    private int[] parentPositions = new int[INITIAL_DEPTH];
+
+    public TLVReader(boolean strict) {
+        this.strict = strict;
+    }
+
+    public TLVReader(byte[] data) {
+        this(data, false);
+    }
+
+    public TLVReader(byte[] data, boolean strict) {
+        this(strict);
+        reset(data);
+    }
+
+    public TLVReader(ByteBuffer data) {
+        this(data, false);
+    }
+
+    public TLVReader(ByteBuffer data, boolean strict) {
+        this(strict);
+        reset(data);
+    }
+
+    public void reset(byte[] data) {
+        reset(ByteBuffer.wrap(data), 0, data.length);
+    }
+
+    /**
+     * Reads the remaining bytes of <code>data</code> (from position to limit).
+     * The position and limit of <code>data</code> are not changed.
+     *
+     * @param data
+     */
+    public void reset(ByteBuffer data) {
+        reset(data, data.position(), data.remaining());
+    }
+
+    /**
+     * Reads <code>length</code> bytes of <code>data</code> starting at the absolute index <code>offset</code>.
+     * The position and limit of <code>data</code> are not changed.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     */
+    public void reset(ByteBuffer data, int offset, int length) {
+        if ((offset < 0) || (length < 0) || (offset > data.limit() - length)) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", limit=" + data.limit());
+        }
+        this.data = data;
+        this.position = offset;
+        this.end = offset + length;
+        this.current = false;
+        this.depth = 0;
+    }
+
+    /**
+     * Moves to the next data object of the current level. The value of the current data object is skipped
+     * if it was not entered.
+     *
+     * @return <code>false</code> when there are no more data objects in the current level.
+     * @throws DecodeTLVException
+     */
+    public boolean next() throws DecodeTLVException {
+        if (current) {
+            position = header.end();
+            current = false;
+        }
+
+        if (position >= end) {
+            return false;
+        }
+
+        header.read(data, position, end, strict);
+        current = true;
+
+        return true;
+    }
+
+    /**
+     * Moves to the first child of the current constructed data object. The next call to {@link #next()}
+     * reads the first child.
+     */
+    public void enter() {
+        if (!current || !header.isConstructed()) {
+            throw new IllegalStateException("The current data object is not a constructed data object.");
+        }
+
+        if (depth == parentEnds.length) {
+            parentEnds = Arrays.copyOf(parentEnds, depth * 2);
+            parentPositions = Arrays.copyOf(parentPositions, depth * 2);
+        }
+
+        parentEnds[depth] = end;
+        parentPositions[depth] = header.end();
+        depth++;
+
+        position = header.valueOffset;
+        end = header.end();
+        current = false;
+    }
+
+    /**
+     * Skips the remaining children of the current level and returns to the parent level.
+     * The next call to {@link #next()} reads the data object following the parent.
+     */
+    public void exit() {
+        if (depth == 0) {
+            throw new IllegalStateException("The reader is at the top level.");
+        }
+
+        depth--;
+        end = parentEnds[depth];
+        position = parentPositions[depth];
+        current = false;
+    }
+
+    /**
+     * Skips the value of the current data object.
+     * {@link #next()} already does it when the data object was not entered.
+     */
+    public void skipValue() {
+        if (current) {
+            position = header.end();
+            current = false;
+        }
+    }
+
+    /**
+     * @return level of the current data object, the top level is 0.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * @return absolute index of the next byte to be read.
+     */
+    public int position() {
+        return current ? header.valueOffset : position;
+    }
+
+    public int tagId() {
+        return header.tagId;
+    }
+
+    public int tagIdFirstByte() {
+        return header.tagIdFirstByte;
+    }
+
+    public boolean isConstructed() {
+        return header.isConstructed();
+    }
+
+    public boolean isPrimitive() {
+        return !header.isConstructed();
+    }
+
+    /**
+     * @return absolute index of the value of the current data object.
+     */
+    public int valueOffset() {
+        return header.valueOffset;
+    }
+
+    public int valueLength() {
+        return header.valueLength;
+    }
+
+    /**
+     * @return the buffer being read.
+     */
+    public ByteBuffer data() {
+        return data;
+    }
+
+    /**
+     * Returns a read-only view of the value of the current data object. No data is copied.
+     *
+     * @return
+     */
+    public ByteBuffer value() {
+        return ByteUtil.slice(data, header.valueOffset, header.valueLength);
+    }
+
+    /**
+     * Copies the value of the current data object into <code>dest</code> starting at <code>destOffset</code>.
+     *
+     * @param dest
+     * @param destOffset
+     * @return number of bytes copied.
+     */
+    public int copyValueTo(byte[] dest, int destOffset) {
+        ByteUtil.copy(data, header.valueOffset, dest, destOffset, header.valueLength);
+        return header.valueLength;
+    }
+
+}
@@ -0,0 +1,88 @@
+package br.com.rbcti.tlv;
+
+import java.util.List;
+
+/**
+ * A record of a file or buffer of concatenated records, decoded by {@link TLVBatchDecoder}.<br>
+ * An invalid record does not stop the decoding of the others, it is delivered with the error.
+ *
+ * @see TLVBatchDecoder
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class TLVRecord {
+
+    private final long index;
+    private final long offset;
+    private final int length;
+    private final List<TagTLV> tags;
+    private final DecodeTLVException error;
+
+    TLVRecord(long index, long offset, int length, List<TagTLV> tags, DecodeTLVException error) {
+        this.index = index;
+        this.offset = offset;
+        this.length = length;
+        this.tags = tags;
+        this.error = error;
+    }
+
+    /**
+     * @return position of the record in the file or buffer, starting at 0.
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * @return offset of the TLV data of the record in the file or buffer, after the length prefix.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return number of bytes of the TLV data of the record.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return the decoded tags, or <code>null</code> if the record is invalid.
+     */
+    public List<TagTLV> getTags() {
+        return tags;
+    }
+
+    /**
+     * @return the error of an invalid record, or <code>null</code>.
+     */
+    public DecodeTLVException getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("TLVRecord [index=");
+        builder.append(index);
+        builder.append(", offset=");
+        builder.append(offset);
+        builder.append(", length=");
+        builder.append(length);
+        if (error != null) {
+            builder.append(", error=");
+            builder.append(error.getMessage());
+        } else {
+            builder.append(", tags=");
+            builder.append(tags.size());
+        }
+        builder.append("]");
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,197 @@
+package br.com.rbcti.tlv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import br.com.rbcti.tlv.DecodeTLVException.Reason;
+import br.com.rbcti.tlv.TLVBatchDecoder.Framing;
+
+/**
+ * Frames the records of a buffer or of a file mapped in memory.<br>
+ * A file is mapped in windows of up to <code>windowSize</code> bytes, so files of any size can be read. A record that
+ * straddles two windows is read from a new window starting at the record, so each record is a view over one window.
+ * A reader is not thread-safe.
+ *
+ * @see TLVBatchDecoder
+ * @author Renato Cunha
+ * @version 1.0
+ */
+final class TLVRecordReader implements Closeable {
+
+    private final Framing framing;
+    private final boolean strict;
+    private final TLVHeader header = new TLVHeader();
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+
+    // current window, starting at the offset windowPosition of the file
+    private ByteBuffer window;
+    private long windowPosition;
+    private int windowEnd;
+    private boolean lastWindow;
+
+    private int next;
+
+    // current record
+    ByteBuffer data;
+    int offset;
+    int length;
+    long position;
+
+    /**
+     * Reads the records from the absolute index <code>offset</code> to <code>end</code> of <code>data</code>.
+     * The positions of the records are indexes of <code>data</code>.
+     */
+    TLVRecordReader(Framing framing, boolean strict, ByteBuffer data, int offset, int end) {
+        this.framing = framing;
+        this.strict = strict;
+        this.channel = null;
+        this.fileSize = end;
+        this.windowSize = end;
+        this.window = data;
+        this.windowEnd = end;
+        this.lastWindow = true;
+        this.next = offset;
+    }
+
+    /**
+     * Reads the records of a file. The positions of the records are offsets in the file.
+     */
+    TLVRecordReader(Framing framing, boolean strict, FileChannel channel, int windowSize) throws IOException {
+        this.framing = framing;
+        this.strict = strict;
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+        map(0L, windowSize);
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return <code>false</code> at the end of the data.
+     * @throws IOException
+     * @throws DecodeTLVException when the framing of the records is invalid.
+     */
+    boolean next() throws IOException, DecodeTLVException {
+        while (true) {
+            if (next == windowEnd) {
+                if (lastWindow) {
+                    return false;
+                }
+                map(windowPosition + next, windowSize);
+            }
+
+            // Before the last window, the end of the window is not the end of the data
+            int recordEnd = frame(window, next, windowEnd, strict || !lastWindow);
+
+            if (recordEnd >= 0) {
+                data = window;
+                offset = next + framing.getPrefixLength();
+                length = recordEnd - offset;
+                position = windowPosition + offset;
+                next = recordEnd;
+                return true;
+            }
+
+            if (lastWindow || !isIncomplete(header.error)) {
+                throw exception();
+            }
+
+            if (next > 0) {
+                // the record straddles the end of the window
+                map(windowPosition + next, windowSize);
+            } else if (windowEnd < Integer.MAX_VALUE) {
+                // the record is larger than a window
+                map(windowPosition, (int) Math.min(2L * windowEnd, Integer.MAX_VALUE));
+            } else {
+                throw new DecodeTLVException(Reason.LENGTH_TOO_LARGE, windowPosition, header.tagId, Integer.MAX_VALUE);
+            }
+        }
+    }
+
+    private void map(long position, int size) throws IOException {
+        long remaining = fileSize - position;
+        int mapped = (int) Math.min(size, remaining);
+
+        this.window = channel.map(FileChannel.MapMode.READ_ONLY, position, mapped);
+        this.windowPosition = position;
+        this.windowEnd = mapped;
+        this.lastWindow = (mapped == remaining);
+        this.next = 0;
+    }
+
+    /**
+     * @return absolute index of the byte following the record at <code>offset</code>, or -1 with the error recorded
+     *         in {@link #header}.
+     */
+    private int frame(ByteBuffer data, int offset, int end, boolean strict) {
+        if (framing == Framing.TLV) {
+            return header.tryRead(data, offset, end, strict) ? header.end() : -1;
+        }
+
+        header.tagId = -1;
+        header.errorOffset = offset;
+
+        int prefixLength = framing.getPrefixLength();
+        if ((end - offset) < prefixLength) {
+            header.error = Reason.INCOMPLETE_DATA;
+            return -1;
+        }
+
+        long length = ByteUtil.fromBigEndian(data, offset, prefixLength);
+        long recordEnd = offset + prefixLength + length;
+        if (recordEnd > end) {
+            if (strict) {
+                header.error = Reason.VALUE_TRUNCATED;
+                header.errorLimit = length;
+                return -1;
+            }
+            // fix the size when the content size is less than the value entered
+            recordEnd = end;
+        }
+
+        return (int) recordEnd;
+    }
+
+    /**
+     * @return true if the error is only caused by the end of the data.
+     */
+    private static boolean isIncomplete(Reason reason) {
+        switch (reason) {
+        case TAG_WITHOUT_LENGTH:
+        case LENGTH_FIELD_INCOMPLETE:
+        case VALUE_TRUNCATED:
+        case INCOMPLETE_DATA:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private DecodeTLVException exception() {
+        long errorOffset = windowPosition + header.errorOffset;
+
+        if (framing == Framing.TLV) {
+            return new DecodeTLVException(header.error, errorOffset, header.tagId, header.errorLimit);
+        }
+        if (header.error == Reason.INCOMPLETE_DATA) {
+            return new DecodeTLVException(Reason.INCOMPLETE_DATA, errorOffset,
+                    "Invalid record at " + errorOffset + ". The length prefix is incomplete.");
+        }
+        return new DecodeTLVException(Reason.VALUE_TRUNCATED, errorOffset,
+                "Invalid record at " + errorOffset + ". The length " + header.errorLimit + " is greater than the available data.");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+}
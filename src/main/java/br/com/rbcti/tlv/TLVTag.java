@@ -0,0 +1,114 @@
+package br.com.rbcti.tlv;
+
+/**
+ * Description of a tag in a {@link TLVDictionary}: name, format of the value and the allowed lengths.<br>
+ * Instances are immutable.
+ *
+ * @see TLVDictionary
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public final class TLVTag {
+
+    /**
+     * Format of the value, as defined by EMV Book 3.
+     */
+    public enum Format {
+        /** Alphabetic characters. */
+        A,
+        /** Alphanumeric characters. */
+        AN,
+        /** Alphanumeric and special characters. */
+        ANS,
+        /** Binary data. */
+        B,
+        /** Compressed numeric: BCD digits padded with F to the right. */
+        CN,
+        /** Numeric: BCD digits padded with 0 to the left. */
+        N
+    }
+
+    private final int tagId;
+    private final String name;
+    private final Format format;
+    private final int minLength;
+    private final int maxLength;
+
+    /**
+     * @param tagId
+     * @param name
+     * @param format
+     * @param minLength minimum length of the value in bytes.
+     * @param maxLength maximum length of the value in bytes.
+     */
+    public TLVTag(int tagId, String name, Format format, int minLength, int maxLength) {
+        if (name == null || format == null) {
+            throw new IllegalArgumentException("name and format are required.");
+        }
+        if ((minLength < 0) || (maxLength < minLength)) {
+            throw new IllegalArgumentException("Invalid lengths for " + Integer.toHexString(tagId).toUpperCase() + " TAG: " + minLength + ".." + maxLength);
+        }
+        this.tagId = tagId;
+        this.name = name;
+        this.format = format;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+    }
+
+    public int getTagId() {
+        return tagId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @return <code>true</code> if the tag is a constructed data object, as told by the first byte of the tag.
+     */
+    public boolean isConstructed() {
+        int firstByte = tagId;
+        while ((firstByte & 0xFFFFFF00) != 0) {
+            firstByte >>>= 8;
+        }
+        return ((firstByte & TagTLV.CONSTRUCTED_DATA_OBJECT) == TagTLV.CONSTRUCTED_DATA_OBJECT);
+    }
+
+    /**
+     * @param length
+     * @return <code>true</code> if <code>length</code> is allowed for the value of this tag.
+     */
+    public boolean isValidLength(int length) {
+        return (length >= minLength) && (length <= maxLength);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("TLVTag [tagId=");
+        builder.append(Integer.toHexString(tagId).toUpperCase());
+        builder.append(", name=");
+        builder.append(name);
+        builder.append(", format=");
+        builder.append(format);
+        builder.append(", length=");
+        builder.append(minLength);
+        builder.append("..");
+        builder.append(maxLength);
+        builder.append("]");
+        return builder.toString();
+    }
+
+}
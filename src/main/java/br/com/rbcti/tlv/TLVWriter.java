@@ -0,0 +1,475 @@
+package br.com.rbcti.tlv;
+
+import static br.com.rbcti.tlv.TagTLV.BYTE_LENGTH_FLAG;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes data in BER-TLV format directly into a byte array or {@link ByteBuffer}.<br>
+ * Lengths are always written in the minimal form (1 byte, or 81, 82, 83 and 84 followed by the length),
+ * so decoding and encoding again returns the same bytes for data encoded this way.<br>
+ * <br>
+ * The length of a constructed data object is only known in {@link #endConstructed()}. The writer reserves
+ * the length field in {@link #startConstructed(int, int)} and writes it when the data object ends, moving the
+ * value when the reserved size was not right. No temporary array is used for the nested levels.<br>
+ * <br>
+ * The writer uses absolute indexes, the position and limit of the destination buffer are not changed.
+ * {@link #position()} is the index following the last written byte.<br>
+ * This class is not thread-safe.
+ *
+ * <pre>
+ * TLVWriter writer = new TLVWriter(buffer);
+ * writer.startConstructed(0x6F)
+ *       .primitive(0x84, aid)
+ *       .startConstructed(0xA5)
+ *       .primitive(0x50, label)
+ *       .endConstructed()
+ *       .endConstructed();
+ * </pre>
+ *
+ * @see DecodeTLV
+ * @author Renato Cunha
+ * @version 1.0
+ */
+public class TLVWriter {
+
+    private static final int INITIAL_DEPTH = 8;
+
+    private final ByteBuffer out;
+    private final int start;
+    private final int limit;
+    private int position;
+
+    private int depth;
+    private int[] valueStarts = new int[INITIAL_DEPTH];
+    private int[] reservedLengths = new int[INITIAL_DEPTH];
+
+    public TLVWriter(byte[] dest) {
+        this(dest, 0, dest.length);
+    }
+
+    public TLVWriter(byte[] dest, int offset, int length) {
+        this(ByteBuffer.wrap(dest), offset, length);
+    }
+
+    /**
+     * Writes from the position to the limit of <code>dest</code>.
+     *
+     * @param dest
+     */
+    public TLVWriter(ByteBuffer dest) {
+        this(dest, dest.position(), dest.remaining());
+    }
+
+    /**
+     * Writes <code>length</code> bytes of <code>dest</code> starting at the absolute index <code>offset</code>.
+     *
+     * @param dest
+     * @param offset
+     * @param length
+     */
+    public TLVWriter(ByteBuffer dest, int offset, int length) {
+        if ((offset < 0) || (length < 0) || (offset > dest.limit() - length)) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", limit=" + dest.limit());
+        }
+        if (dest.isReadOnly()) {
+            throw new IllegalArgumentException("The buffer is read-only.");
+        }
+        this.out = dest;
+        this.start = offset;
+        this.limit = offset + length;
+        this.position = offset;
+    }
+
+    /**
+     * @return absolute index following the last written byte.
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * @return number of bytes written.
+     */
+    public int length() {
+        return position - start;
+    }
+
+    /**
+     * @return number of constructed data objects not ended.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    public TLVWriter primitive(int tagId, byte[] value) {
+        return primitive(tagId, value, 0, value.length);
+    }
+
+    public TLVWriter primitive(int tagId, byte[] value, int offset, int length) {
+        writeTagAndLength(tagId, length);
+        ensureCapacity(length);
+        if (out.hasArray()) {
+            System.arraycopy(value, offset, out.array(), out.arrayOffset() + position, length);
+        } else {
+            for (int ct = 0; ct < length; ct++) {
+                out.put(position + ct, value[offset + ct]);
+            }
+        }
+        position += length;
+        return this;
+    }
+
+    /**
+     * Writes the remaining bytes of <code>value</code>. The position of <code>value</code> is not changed.
+     *
+     * @param tagId
+     * @param value
+     * @return
+     */
+    public TLVWriter primitive(int tagId, ByteBuffer value) {
+        int length = value.remaining();
+        writeTagAndLength(tagId, length);
+        ensureCapacity(length);
+        if (out.hasArray()) {
+            ByteUtil.copy(value, value.position(), out.array(), out.arrayOffset() + position, length);
+        } else {
+            ByteBuffer dest = out.duplicate();
+            dest.clear();
+            dest.position(position);
+            dest.put(value.duplicate());
+        }
+        position += length;
+        return this;
+    }
+
+    /**
+     * Starts a constructed data object. The following data objects are its children until {@link #endConstructed()}.
+     *
+     * @param tagId
+     * @return
+     */
+    public TLVWriter startConstructed(int tagId) {
+        return startConstructed(tagId, 0);
+    }
+
+    /**
+     * Starts a constructed data object. The following data objects are its children until {@link #endConstructed()}.
+     *
+     * @param tagId
+     * @param expectedLength expected length of the value, used to reserve the length field.
+     *                       When it is right the value is not moved in {@link #endConstructed()}.
+     * @return
+     */
+    public TLVWriter startConstructed(int tagId, int expectedLength) {
+        int reserved = lengthFieldSize(expectedLength);
+
+        writeTag(tagId);
+        ensureCapacity(reserved);
+        position += reserved;
+
+        if (depth == valueStarts.length) {
+            valueStarts = Arrays.copyOf(valueStarts, depth * 2);
+            reservedLengths = Arrays.copyOf(reservedLengths, depth * 2);
+        }
+
+        valueStarts[depth] = position;
+        reservedLengths[depth] = reserved;
+        depth++;
+
+        return this;
+    }
+
+    /**
+     * Ends the last started constructed data object and writes its length.
+     *
+     * @return
+     */
+    public TLVWriter endConstructed() {
+        if (depth == 0) {
+            throw new IllegalStateException("There is no constructed data object to end.");
+        }
+
+        depth--;
+
+        int valueStart = valueStarts[depth];
+        int reserved = reservedLengths[depth];
+        int length = position - valueStart;
+        int needed = lengthFieldSize(length);
+
+        if (needed != reserved) {
+            int shift = needed - reserved;
+            if (shift > 0) {
+                ensureCapacity(shift);
+            }
+            move(valueStart, valueStart + shift, length);
+            valueStart += shift;
+            position += shift;
+        }
+
+        writeLength(valueStart - needed, length);
+
+        return this;
+    }
+
+    /**
+     * Writes a tag and its children. The length of a constructed tag is computed from its children,
+     * so changes made to the tree are encoded. The children are written without recursion, so the depth of the tree
+     * is not limited by the stack of the thread.
+     *
+     * @param tag
+     * @return
+     */
+    public TLVWriter write(TagTLV tag) {
+        List<TagTLV> children = writeStart(tag);
+        if (children == null) {
+            return this;
+        }
+
+        // children of the constructed tags being written and the index of the next one, indexed by level
+        Object[] lists = new Object[INITIAL_DEPTH];
+        int[] indexes = new int[INITIAL_DEPTH];
+        lists[0] = children;
+        int level = 1;
+
+        while (level > 0) {
+            @SuppressWarnings("unchecked")
+            List<TagTLV> list = (List<TagTLV>) lists[level - 1];
+            int index = indexes[level - 1];
+
+            if (index == list.size()) {
+                endConstructed();
+                lists[level - 1] = null;
+                level--;
+                continue;
+            }
+
+            indexes[level - 1] = index + 1;
+            children = writeStart(list.get(index));
+
+            if (children != null) {
+                if (level == lists.length) {
+                    lists = Arrays.copyOf(lists, level * 2);
+                    indexes = Arrays.copyOf(indexes, level * 2);
+                }
+                lists[level] = children;
+                indexes[level] = 0;
+                level++;
+            }
+        }
+
+        return this;
+    }
+
+    public TLVWriter write(List<TagTLV> tags) {
+        for (TagTLV tag : tags) {
+            write(tag);
+        }
+        return this;
+    }
+
+    /**
+     * Encodes tags in a new array.
+     *
+     * @param tags
+     * @return
+     */
+    public static byte[] encode(List<TagTLV> tags) {
+        int length = 0;
+        for (TagTLV tag : tags) {
+            length += encodedLength(tag);
+        }
+
+        byte[] data = new byte[length];
+        new TLVWriter(data).write(tags);
+        return data;
+    }
+
+    /**
+     * @param tag
+     * @return number of bytes of the encoded tag, with its children. The children are read without recursion.
+     */
+    public static int encodedLength(TagTLV tag) {
+        List<TagTLV> children = childrenOf(tag);
+        if (children == null) {
+            return encodedLength(tag.getTagId(), tag.getValueLength());
+        }
+
+        // children, index of the next child, tag and length of the value of the constructed tags, indexed by level
+        Object[] lists = new Object[INITIAL_DEPTH];
+        int[] indexes = new int[INITIAL_DEPTH];
+        int[] tagIds = new int[INITIAL_DEPTH];
+        int[] lengths = new int[INITIAL_DEPTH];
+        lists[0] = children;
+        tagIds[0] = tag.getTagId();
+        int level = 1;
+
+        for (;;) {
+            int top = level - 1;
+            @SuppressWarnings("unchecked")
+            List<TagTLV> list = (List<TagTLV>) lists[top];
+
+            if (indexes[top] == list.size()) {
+                int length = encodedLength(tagIds[top], lengths[top]);
+                lists[top] = null;
+                level--;
+                if (level == 0) {
+                    return length;
+                }
+                lengths[level - 1] += length;
+                continue;
+            }
+
+            TagTLV child = list.get(indexes[top]++);
+            children = childrenOf(child);
+
+            if (children == null) {
+                lengths[top] += encodedLength(child.getTagId(), child.getValueLength());
+                continue;
+            }
+
+            if (level == lists.length) {
+                lists = Arrays.copyOf(lists, level * 2);
+                indexes = Arrays.copyOf(indexes, level * 2);
+                tagIds = Arrays.copyOf(tagIds, level * 2);
+                lengths = Arrays.copyOf(lengths, level * 2);
+            }
+            lists[level] = children;
+            indexes[level] = 0;
+            tagIds[level] = child.getTagId();
+            lengths[level] = 0;
+            level++;
+        }
+    }
+
+    /**
+     * @param tagId
+     * @param valueLength
+     * @return number of bytes of a data object.
+     */
+    public static int encodedLength(int tagId, int valueLength) {
+        return tagSize(tagId) + lengthFieldSize(valueLength) + valueLength;
+    }
+
+    static int tagSize(int tagId) {
+        if ((tagId & 0xFFFFFF00) == 0) {
+            return 1;
+        }
+        if ((tagId & 0xFFFF0000) == 0) {
+            return 2;
+        }
+        if ((tagId & 0xFF000000) == 0) {
+            return 3;
+        }
+        return 4;
+    }
+
+    static int lengthFieldSize(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative length: " + length);
+        }
+        if (length < BYTE_LENGTH_FLAG) {
+            return 1;
+        }
+        if (length <= 0xFF) {
+            return 2;
+        }
+        if (length <= 0xFFFF) {
+            return 3;
+        }
+        if (length <= 0xFFFFFF) {
+            return 4;
+        }
+        return 5;
+    }
+
+    /**
+     * @return the children of a constructed tag, or <code>null</code> when the tag is encoded with its value.
+     */
+    private static List<TagTLV> childrenOf(TagTLV tag) {
+        List<TagTLV> children = tag.isConstructedObject() ? tag.getChildren() : null;
+        return ((children == null) || children.isEmpty()) ? null : children;
+    }
+
+    /**
+     * Writes a tag with its value, or starts a constructed tag with children.
+     *
+     * @return the children to write before the constructed tag is ended, or <code>null</code> when the tag was written.
+     */
+    private List<TagTLV> writeStart(TagTLV tag) {
+        List<TagTLV> children = childrenOf(tag);
+
+        if (children == null) {
+            writeTagAndLength(tag.getTagId(), tag.getValueLength());
+            ensureCapacity(tag.getValueLength());
+            if (out.hasArray()) {
+                tag.copyValueTo(out.array(), out.arrayOffset() + position);
+            } else {
+                ByteBuffer dest = out.duplicate();
+                dest.clear();
+                dest.position(position);
+                dest.put(tag.getValueBuffer());
+            }
+            position += tag.getValueLength();
+            return null;
+        }
+
+        // the decoded length is the right one when the tree was not changed
+        startConstructed(tag.getTagId(), tag.getValueLength());
+        return children;
+    }
+
+    private void writeTagAndLength(int tagId, int length) {
+        writeTag(tagId);
+        ensureCapacity(lengthFieldSize(length));
+        position += writeLength(position, length);
+    }
+
+    private void writeTag(int tagId) {
+        int size = tagSize(tagId);
+        ensureCapacity(size);
+        for (int shift = (size - 1) * 8; shift >= 0; shift -= 8) {
+            out.put(position, (byte) (tagId >>> shift));
+            position++;
+        }
+    }
+
+    private int writeLength(int offset, int length) {
+        int size = lengthFieldSize(length);
+
+        if (size == 1) {
+            out.put(offset, (byte) length);
+            return 1;
+        }
+
+        out.put(offset, (byte) (BYTE_LENGTH_FLAG | (size - 1)));
+        for (int ct = 1, shift = (size - 2) * 8; ct < size; ct++, shift -= 8) {
+            out.put(offset + ct, (byte) (length >>> shift));
+        }
+        return size;
+    }
+
+    private void move(int from, int to, int length) {
+        if (out.hasArray()) {
+            System.arraycopy(out.array(), out.arrayOffset() + from, out.array(), out.arrayOffset() + to, length);
+        } else if (to > from) {
+            for (int ct = length - 1; ct >= 0; ct--) {
+                out.put(to + ct, out.get(from + ct));
+            }
+        } else {
+            for (int ct = 0; ct < length; ct++) {
+                out.put(to + ct, out.get(from + ct));
+            }
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (count > limit - position) {
+            throw new BufferOverflowException();
+        }
+    }
+
+}
@@ -1,6 +1,11 @@
 package br.com.rbcti.tlv;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,19 +36,67 @@ public class TagTLV implements Serializable {
      */
     public static final int SECOND_BYTE_TAG_NUMBER = 0x1F;
 
+    /**
+     * Nos bytes seguintes ao primeiro, significa que o próximo byte também faz parte do id da tag
+     * bit 8 = 1
+     */
+    public static final int NEXT_BYTE_TAG_NUMBER = 0x80;
+
     public static final int BYTE_LENGTH_FLAG = 0X80;
 
     public static final int BYTE_LENGTH_MASK = 0X7F;
 
     private int tagId;
     private int tagIdFirstByte;
-    private byte[] dataObject;
+    // copied on demand from the source in zero-copy mode, volatile so a shared tag publishes one copy safely
+    private volatile byte[] dataObject;
+    private int valueLength;
     private List<TagTLV> children;
 
+    /**
+     * Buffer containing the value when this tag is a view (zero-copy mode).
+     */
+    private transient ByteBuffer source;
+    private transient int valueOffset;
+
+    /**
+     * Decoder of the children when they are decoded on demand (lazy mode), <code>null</code> once they are decoded.
+     */
+    private transient volatile TLVDecoder childrenDecoder;
+
     public TagTLV(int tagId, int tagIdFirstByte, byte[] dataObject) {
         this.tagId = tagId;
         this.tagIdFirstByte = tagIdFirstByte;
         this.dataObject = dataObject;
+        this.valueLength = (dataObject == null) ? 0 : dataObject.length;
+    }
+
+    /**
+     * Creates a tag whose value is a view over <code>length</code> bytes of <code>source</code>
+     * starting at <code>offset</code>. The value is only copied when {@link #getDataObject()} is called.
+     */
+    TagTLV(int tagId, int tagIdFirstByte, ByteBuffer source, int offset, int length) {
+        this.tagId = tagId;
+        this.tagIdFirstByte = tagIdFirstByte;
+        this.source = source;
+        this.valueOffset = offset;
+        this.valueLength = length;
+    }
+
+    /**
+     * Reuses this tag as a view over <code>length</code> bytes of <code>source</code>, see {@link TLVArena}.
+     */
+    void init(int tagId, int tagIdFirstByte, ByteBuffer source, int offset, int length) {
+        this.tagId = tagId;
+        this.tagIdFirstByte = tagIdFirstByte;
+        this.dataObject = null;
+        this.children = null;
+        this.source = source;
+        this.valueOffset = offset;
+        this.valueLength = length;
+        if (childrenDecoder != null) {
+            childrenDecoder = null;
+        }
     }
 
     public int getTagId() {
@@ -54,21 +107,236 @@ public class TagTLV implements Serializable {
         return tagIdFirstByte;
     }
 
+    /**
+     * Returns the value of this tag.<br>
+     * For tags decoded in zero-copy mode, the value is copied from the source buffer on the first call.
+     *
+     * @return
+     */
     public byte[] getDataObject() {
+        byte[] value = dataObject;
+        if ((value == null) && (source != null)) {
+            value = copyDataObject();
+        }
+        return value;
+    }
+
+    /**
+     * Copies the value from the source once, under the lock of {@link #decodeChildren()}, so all threads get the
+     * same array.
+     */
+    private synchronized byte[] copyDataObject() {
+        if (dataObject == null) {
+            byte[] copy = new byte[valueLength];
+            ByteUtil.copy(source, valueOffset, copy, 0, valueLength);
+            dataObject = copy;
+        }
         return dataObject;
     }
 
+    /**
+     * Number of bytes of the value of this tag.
+     *
+     * @return
+     */
+    public int getValueLength() {
+        return valueLength;
+    }
+
+    /**
+     * Returns a read-only view of the value of this tag. No data is copied.<br>
+     * For tags decoded from a direct {@link ByteBuffer} the view is also direct.
+     *
+     * @return
+     */
+    public ByteBuffer getValueBuffer() {
+        if (source != null) {
+            return ByteUtil.slice(source, valueOffset, valueLength);
+        }
+        if (dataObject == null) {
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(dataObject).asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies the value of this tag into <code>dest</code> starting at <code>destOffset</code>.
+     *
+     * @param dest
+     * @param destOffset
+     * @return number of bytes copied.
+     */
+    public int copyValueTo(byte[] dest, int destOffset) {
+        if (source != null) {
+            ByteUtil.copy(source, valueOffset, dest, destOffset, valueLength);
+        } else if (dataObject != null) {
+            System.arraycopy(dataObject, 0, dest, destOffset, valueLength);
+        }
+        return valueLength;
+    }
+
+    /**
+     * Reads the value as an unsigned big-endian number, for example the 9F36 ATC.<br>
+     * The value is read in place, nothing is copied.
+     *
+     * @return
+     * @throws IllegalStateException if the value does not have 1 to 4 bytes.
+     */
+    public long getUnsignedInt() {
+        checkValueLength(1, 4);
+        return ByteUtil.fromBigEndian(valueBuffer(), valueStart(), valueLength);
+    }
+
+    /**
+     * Reads the value as packed BCD digits (numeric format), for example the 9F02 amount. Trailing F nibbles
+     * (compressed numeric format) are ignored.<br>
+     * The value is read in place, nothing is copied.
+     *
+     * @return
+     * @throws NumberFormatException if a nibble is not a decimal digit.
+     * @throws ArithmeticException if the number does not fit in a <code>long</code>.
+     */
+    public long getBcdLong() {
+        return ByteUtil.fromBcd(valueBuffer(), valueStart(), valueLength);
+    }
+
+    /**
+     * Reads the value as a YYMMDD date in BCD, for example the 5F24 expiration date. The years 00 to 49 are
+     * 2000 to 2049 and the years 50 to 99 are 1950 to 1999.
+     *
+     * @return
+     * @throws IllegalStateException if the value does not have 3 bytes.
+     * @throws NumberFormatException if a nibble is not a decimal digit.
+     * @throws java.time.DateTimeException if the date is not valid.
+     */
+    public LocalDate getDate() {
+        checkValueLength(3, 3);
+
+        ByteBuffer value = valueBuffer();
+        int start = valueStart();
+
+        int year = (int) ByteUtil.fromBcd(value, start, 1);
+        int month = (int) ByteUtil.fromBcd(value, start + 1, 1);
+        int day = (int) ByteUtil.fromBcd(value, start + 2, 1);
+
+        return LocalDate.of((year < 50) ? 2000 + year : 1900 + year, month, day);
+    }
+
+    /**
+     * Reads the value as text of one byte per character (ISO 8859-1, which includes ASCII), for example the
+     * 50 application label.
+     *
+     * @return
+     */
+    public String getAscii() {
+        if (source == null) {
+            return (dataObject == null) ? "" : new String(dataObject, StandardCharsets.ISO_8859_1);
+        }
+        if (source.hasArray()) {
+            return new String(source.array(), source.arrayOffset() + valueOffset, valueLength, StandardCharsets.ISO_8859_1);
+        }
+        byte[] value = new byte[valueLength];
+        ByteUtil.copy(source, valueOffset, value, 0, valueLength);
+        return new String(value, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns a view of the value as text of one byte per character, as {@link #getAscii()}. The characters are read
+     * from the value when they are used, nothing is copied.
+     *
+     * @return
+     */
+    public CharSequence getAsciiSequence() {
+        return new AsciiSequence(valueBuffer(), valueStart(), valueLength);
+    }
+
+    /**
+     * Appends the hexadecimal digits of the value to <code>dest</code>, reading the value in place.
+     */
+    void appendValueHex(Appendable dest, boolean spaced, char[] chunk) throws IOException {
+        if (source != null) {
+            ByteUtil.appendHex(dest, source, valueOffset, valueLength, spaced, chunk);
+        } else if (dataObject != null) {
+            ByteUtil.appendHex(dest, dataObject, 0, valueLength, spaced, chunk);
+        }
+    }
+
     public void addChildTag(TagTLV tagTLV) {
+        if (childrenDecoder != null) {
+            decodeChildren();
+        }
         if (children == null) {
             children = new ArrayList<TagTLV>();
         }
         children.add(tagTLV);
     }
 
+    /**
+     * Adds a child while this tag is decoded, taking the list of children from the arena when there is one.
+     */
+    void addChild(TagTLV tagTLV, TLVArena arena) {
+        if (children == null) {
+            children = (arena == null) ? new ArrayList<TagTLV>() : arena.list();
+        }
+        children.add(tagTLV);
+    }
+
+    /**
+     * Sets the children decoded for this tag, the list is not copied.
+     */
+    void setChildren(List<TagTLV> tags) {
+        children = tags.isEmpty() ? null : tags;
+    }
+
+    /**
+     * Returns the children of a constructed tag.<br>
+     * For tags decoded in lazy mode, the children are decoded on the first call. It is safe to call this method
+     * from many threads, the value is decoded only once.
+     *
+     * @return
+     * @throws IllegalStateException if the value of a tag decoded in lazy mode is not valid TLV data.
+     */
     public List<TagTLV> getChildren() {
+        if (childrenDecoder != null) {
+            decodeChildren();
+        }
         return children;
     }
 
+    /**
+     * The children will be decoded by <code>decoder</code> on the first call of {@link #getChildren()}.
+     */
+    void decodeChildrenLater(TLVDecoder decoder) {
+        this.childrenDecoder = decoder;
+    }
+
+    private synchronized void decodeChildren() {
+        TLVDecoder decoder = childrenDecoder;
+
+        if (decoder == null) {
+            return;
+        }
+
+        List<TagTLV> tags;
+
+        try {
+            if (source != null) {
+                tags = decoder.decodeChildren(source, valueOffset, valueLength);
+            } else {
+                tags = decoder.decodeChildren(ByteBuffer.wrap(dataObject), 0, valueLength);
+            }
+        } catch (DecodeTLVException e) {
+            throw new IllegalStateException("Invalid value of " + tagId + " TAG. " + e.getMessage(), e);
+        }
+
+        if (!tags.isEmpty()) {
+            children = tags;
+        }
+
+        // publishes the children to the threads that read childrenDecoder
+        childrenDecoder = null;
+    }
+
     /**
      * Indica que o conteúdo desta tag contém 0, 1 ou mais outros elementos.
      * @return
@@ -85,14 +353,37 @@ public class TagTLV implements Serializable {
         return !((tagIdFirstByte & CONSTRUCTED_DATA_OBJECT) == CONSTRUCTED_DATA_OBJECT);
     }
 
+    /**
+     * @return the name of the {@link TagTLVEnum} constant of this tag, or the name in the default
+     *         {@link TLVDictionary}, or an empty string if the tag is unknown.
+     */
     public String getDescripton() {
         TagTLVEnum tag = TagTLVEnum.valueOf(tagId);
         if (tag != null) {
             return tag.toString();
         }
+        TLVTag dictionaryTag = TLVDictionary.getDefault().get(tagId);
+        if (dictionaryTag != null) {
+            return dictionaryTag.getName();
+        }
         return "";
     }
 
+    /**
+     * @return the description of this tag in the default {@link TLVDictionary}, or <code>null</code>
+     *         if the tag is unknown.
+     */
+    public TLVTag getTag() {
+        return TLVDictionary.getDefault().get(tagId);
+    }
+
+    /**
+     * Returns the value as text when the format of the tag in the default {@link TLVDictionary} is text (a, an, ans)
+     * or digits (n, cn). The values of the other tags are an empty string.<br>
+     * The tags 50, 9F12, 5F2D and 84 are always text.
+     *
+     * @return
+     */
     public String getDataObjectAsString() {
 
         TagTLVEnum tag = TagTLVEnum.valueOf(tagId);
@@ -103,13 +394,50 @@ public class TagTLV implements Serializable {
                 case APPLICATION_PREFERRED_NAME:
                 case LANGUAGE_PREFERENCE:
                 case DEDICATED_FILE_NAME:
-                    return new String(dataObject);
+                    return getAscii();
+                default:
+            }
+        }
+
+        TLVTag dictionaryTag = TLVDictionary.getDefault().get(tagId);
+
+        if (dictionaryTag != null) {
+            switch (dictionaryTag.getFormat()) {
+                case A:
+                case AN:
+                case ANS:
+                    return getAscii();
+                case N:
+                case CN:
+                    return getDigits();
                 default:
             }
         }
         return "";
     }
 
+    /**
+     * Digits of a numeric value, without the trailing F nibbles of the compressed numeric format.
+     * Nibbles that are not digits are kept as hexadecimal.
+     */
+    private String getDigits() {
+        ByteBuffer value = valueBuffer();
+        int start = valueStart();
+
+        char[] digits = new char[valueLength * 2];
+        int count = 0;
+
+        for (int ct = 0; ct < valueLength; ct++) {
+            int b = value.get(start + ct);
+            digits[count++] = Character.forDigit((b >>> 4) & 0x0F, 16);
+            digits[count++] = Character.forDigit(b & 0x0F, 16);
+        }
+        while ((count > 0) && (digits[count - 1] == 'f')) {
+            count--;
+        }
+        return new String(digits, 0, count);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -140,11 +468,82 @@ public class TagTLV implements Serializable {
         builder.append(", description=");
         builder.append(getDescripton());
         builder.append(", dataObject=");
-        builder.append(ByteUtil.encodeHexSpaced(dataObject));
+        builder.append(ByteUtil.encodeHexSpaced(getDataObject()));
         builder.append(", dataObjectAsString=");
         builder.append(getDataObjectAsString());
         builder.append("]");
         return builder.toString();
     }
 
+    private ByteBuffer valueBuffer() {
+        if (source != null) {
+            return source;
+        }
+        return ByteBuffer.wrap((dataObject == null) ? new byte[0] : dataObject);
+    }
+
+    private int valueStart() {
+        return (source != null) ? valueOffset : 0;
+    }
+
+    private void checkValueLength(int min, int max) {
+        if ((valueLength < min) || (valueLength > max)) {
+            throw new IllegalStateException("Invalid value length of " + tagId + " TAG: " + valueLength + " bytes.");
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // the source buffer is not serialized, so the value and the children must be materialized first
+        getDataObject();
+        getChildren();
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Characters of a value read in place, one byte per character.
+     */
+    private static final class AsciiSequence implements CharSequence {
+
+        private final ByteBuffer value;
+        private final int offset;
+        private final int length;
+
+        AsciiSequence(ByteBuffer value, int offset, int length) {
+            this.value = value;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((index < 0) || (index >= length)) {
+                throw new IndexOutOfBoundsException("index=" + index + ", length=" + length);
+            }
+            return (char) (value.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if ((start < 0) || (end > length) || (start > end)) {
+                throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + length);
+            }
+            return new AsciiSequence(value, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[length];
+            for (int ct = 0; ct < length; ct++) {
+                chars[ct] = (char) (value.get(offset + ct) & 0xFF);
+            }
+            return new String(chars);
+        }
+
+    }
+
 }
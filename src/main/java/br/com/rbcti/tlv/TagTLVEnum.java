@@ -24,6 +24,16 @@ public enum TagTLVEnum {
     FILE_CONTROL_INFORMATION_ISSUER_DISCRETIONARY_DATA(0xBF0C),
     LOG_ENTRY(0x9F4D);
 
+    // values() clones the array on each call
+    private static final TagTLVEnum[] VALUES = values();
+    private static final IntIntMap INDEX = new IntIntMap(VALUES.length);
+
+    static {
+        for (TagTLVEnum tag : VALUES) {
+            INDEX.put(tag.id, tag.ordinal());
+        }
+    }
+
     private TagTLVEnum(int tagId) {
         id = tagId;
     }
@@ -34,15 +44,20 @@ public enum TagTLVEnum {
         return id;
     }
 
+    /**
+     * @param id
+     * @return the tag or <code>null</code> if there is no constant for the id.
+     */
     public static TagTLVEnum valueOf(int id) {
-        TagTLVEnum result = null;
-        for (TagTLVEnum tag : TagTLVEnum.values()) {
-            if (tag.getId() == id) {
-                result = tag;
-                break;
-            }
-        }
-        return result;
+        int ordinal = INDEX.get(id);
+        return (ordinal == IntIntMap.NO_VALUE) ? null : VALUES[ordinal];
+    }
+
+    /**
+     * @return the description of this tag in the EMV dictionary.
+     */
+    public TLVTag getTag() {
+        return TLVDictionary.emv().get(id);
     }
 
 }
@@ -2,10 +2,15 @@ package br.com.rbcti.tlv;
 
 import static br.com.rbcti.tlv.ByteUtil.decodeHex;
 import static br.com.rbcti.tlv.ByteUtil.encodeHex;
+import static br.com.rbcti.tlv.ByteUtil.encodeHexSpaced;
+import static br.com.rbcti.tlv.ByteUtil.fromBcd;
 import static br.com.rbcti.tlv.ByteUtil.fromBigEndian;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertThrows;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.testng.annotations.Test;
@@ -87,4 +92,96 @@ public class ByteUtilTest {
         assertThrows(IllegalArgumentException.class, () -> fromBigEndian(nineBytes));
     }
 
+    @Test
+    public void testFromBigEndianOffset() {
+
+        System.out.println(getClass().getSimpleName() + ".testFromBigEndianOffset");
+
+        assertEquals(fromBigEndian(SAMPLE3_BYTES, 1, 4), 0x00010203L);
+        assertEquals(fromBigEndian(SAMPLE2_BYTES, 2, 8), -1L);
+        assertThrows(IllegalArgumentException.class, () -> fromBigEndian(SAMPLE3_BYTES, 0, 9));
+        assertThrows(IllegalArgumentException.class, () -> fromBigEndian(SAMPLE3_BYTES, 0, 0));
+    }
+
+    @Test
+    public void testFromBcd() {
+
+        System.out.println(getClass().getSimpleName() + ".testFromBcd");
+
+        assertEquals(fromBcd(decodeHex("000000012345"), 0, 6), 12345L);
+        assertEquals(fromBcd(decodeHex("99000000012345"), 1, 6), 12345L);
+        assertEquals(fromBcd(decodeHex("123fff"), 0, 3), 123L);
+        assertEquals(fromBcd(decodeHex("922337203685477580"), 0, 9), 922337203685477580L);
+        assertEquals(fromBcd(new byte[0], 0, 0), 0L);
+        assertThrows(NumberFormatException.class, () -> fromBcd(decodeHex("12a4"), 0, 2));
+        assertThrows(NumberFormatException.class, () -> fromBcd(decodeHex("1f34"), 0, 2));
+        assertThrows(ArithmeticException.class, () -> fromBcd(decodeHex("99999999999999999999"), 0, 10));
+    }
+
+    @Test
+    public void testEncodeHexInto() throws IOException {
+
+        System.out.println(getClass().getSimpleName() + ".testEncodeHexInto");
+
+        // Longer than the blocks of 8 bytes and the chunks of the appendables
+        byte[] bytes = new byte[1000];
+        for (int ct = 0; ct < bytes.length; ct++) {
+            bytes[ct] = (byte) (ct * 7);
+        }
+
+        StringBuilder hex = new StringBuilder();
+        StringBuilder hexSpaced = new StringBuilder();
+        for (int ct = 0; ct < bytes.length; ct++) {
+            hex.append(String.format("%02x", bytes[ct]));
+            hexSpaced.append(String.format((ct == 0) ? "%02x" : " %02x", bytes[ct]));
+        }
+
+        assertEquals(encodeHex(bytes), hex.toString());
+        assertEquals(encodeHexSpaced(bytes), hexSpaced.toString());
+        assertEquals(encodeHexSpaced(new byte[0]), "");
+        assertEquals(encodeHexSpaced(new byte[] { 0x0A }), "0a");
+
+        for (int length = 0; length < 20; length++) {
+            char[] dest = new char[length * 2 + 2];
+            assertEquals(ByteUtil.encodeHex(bytes, 3, length, dest, 1), length * 2);
+            assertEquals(new String(dest, 1, length * 2), hex.substring(6, 6 + length * 2));
+        }
+
+        assertEquals(ByteUtil.appendHex(new StringBuilder("x"), bytes, 0, bytes.length).toString(), "x" + hex);
+        assertEquals(ByteUtil.appendHexSpaced(new StringBuilder(), bytes, 0, bytes.length).toString(), hexSpaced.toString());
+        assertEquals(ByteUtil.appendHexSpaced(new StringWriter(), bytes, 0, bytes.length).toString(), hexSpaced.toString());
+        assertEquals(ByteUtil.appendHex(new StringBuffer(), bytes, 2, 3).toString(), hex.substring(4, 10));
+        assertEquals(ByteUtil.appendHex(new StringBuilder(), bytes, 0, 0).length(), 0);
+
+        // Direct buffers are read in chunks
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals(ByteUtil.appendHex(new StringBuilder(), direct, 0, bytes.length, true, new char[30]).toString(), hexSpaced.toString());
+        assertEquals(ByteUtil.appendHex(new StringBuilder(), direct, 10, 5, false, new char[3]).toString(), hex.substring(20, 30));
+    }
+
+    @Test
+    public void testDecodeHexStrict() {
+
+        System.out.println(getClass().getSimpleName() + ".testDecodeHexStrict");
+
+        assertEquals(Arrays.equals(ByteUtil.decodeHexStrict("9F 02\t06\r\n00 00 00 01 23 45"), decodeHex("9F020600000001 2345")), true);
+        assertEquals(Arrays.equals(ByteUtil.decodeHexStrict(SAMPLE3_STRING.toUpperCase()), SAMPLE3_BYTES), true);
+        assertEquals(ByteUtil.decodeHexStrict("").length, 0);
+
+        byte[] dest = new byte[4];
+        assertEquals(ByteUtil.decodeHex(new StringBuilder("ab cd"), dest, 1), 2);
+        assertEquals(Arrays.equals(dest, new byte[] { 0, (byte) 0xAB, (byte) 0xCD, 0 }), true);
+
+        assertThrows(IllegalArgumentException.class, () -> ByteUtil.decodeHexStrict("9F 0G"));
+        assertThrows(IllegalArgumentException.class, () -> ByteUtil.decodeHexStrict("9F 0"));
+        assertThrows(IllegalArgumentException.class, () -> ByteUtil.decodeHexStrict("9F-02"));
+        assertThrows(IndexOutOfBoundsException.class, () -> ByteUtil.decodeHex("AABBCC", new byte[2], 0));
+
+        // decodeHex keeps converting invalid digits as -1
+        assertEquals(decodeHex("0G")[0], (byte) -1);
+        assertEquals(decodeHex("G0")[0], (byte) -16);
+        assertThrows(IllegalArgumentException.class, () -> decodeHex("ABC"));
+    }
+
 }
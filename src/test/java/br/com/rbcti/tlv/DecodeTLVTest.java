@@ -2,9 +2,15 @@ package br.com.rbcti.tlv;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.expectThrows;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.testng.annotations.Test;
 
@@ -43,6 +49,40 @@ public class DecodeTLVTest {
         assertEquals(Arrays.equals(threeTags.get(2).getDataObject(), new byte[] { (byte) 0xC1, (byte) 0xC2, (byte) 0xC3, (byte) 0xC4}), true);
     }
 
+    @Test
+    public void testDecodeTLVMultiByteTags() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testDecodeTLVMultiByteTags");
+
+        // FF8101 is constructed, DF8101 and DF818202 have 3 and 4 bytes
+        byte[] data = ByteUtil.decodeHex("FF 81 01 0C DF 81 01 01 AA DF 81 82 02 02 BB CC 9F 4D 00");
+
+        List<TagTLV> tags = new DecodeTLV(true).decode(data);
+
+        assertEquals(tags.size(), 2);
+        assertEquals(tags.get(0).getTagId(), 0xFF8101);
+        assertEquals(tags.get(0).getTagIdFirstByte(), 0xFF);
+        assertEquals(tags.get(0).isConstructedObject(), true);
+        assertEquals(tags.get(0).getChildren().get(0).getTagId(), 0xDF8101);
+        assertEquals(tags.get(0).getChildren().get(0).getDataObject()[0], (byte) 0xAA);
+        assertEquals(tags.get(0).getChildren().get(1).getTagId(), 0xDF818202);
+        assertEquals(tags.get(0).getChildren().get(1).getValueLength(), 2);
+        assertEquals(tags.get(1).getTagId(), 0x9F4D);
+
+        // The tags are written back with the same bytes
+        assertEquals(Arrays.equals(TLVWriter.encode(tags), data), true);
+
+        // The tag ends in the 4th byte
+        DecodeTLVException e = expectThrows(DecodeTLVException.class, () -> new DecodeTLV().decode(ByteUtil.decodeHex("DF 81 81 81 01 01 AA")));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.TAG_TOO_LONG);
+        assertEquals(e.getOffset(), 0);
+
+        e = expectThrows(DecodeTLVException.class, () -> new DecodeTLV().decode(ByteUtil.decodeHex("50 00 DF 81")));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.TAG_WITHOUT_LENGTH);
+        assertEquals(e.getOffset(), 2);
+        assertEquals(e.getMessage(), "Invalid TLV data. df 81 tag without length field.");
+    }
+
     @Test
     public void testDecodeTLVStrictMode() throws DecodeTLVException {
 
@@ -158,4 +198,172 @@ public class DecodeTLVTest {
         assertEquals(tlvData.get(1).getDataObjectAsString(), "ABC");
     }
 
+    @Test
+    public void testDecodeTLVZeroCopy() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testDecodeTLVZeroCopy");
+
+        final boolean STRICT_MODE = true;
+        final boolean ZERO_COPY = true;
+
+        byte[] data = ByteUtil.decodeHex("6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 02 0B 0A");
+
+        List<TagTLV> copyTags = new DecodeTLV(STRICT_MODE).decode(data);
+        List<TagTLV> viewTags = new DecodeTLV(STRICT_MODE, ZERO_COPY).decode(data);
+
+        TagTLV logEntryCopy = DecodeTLV.findTagTLV(copyTags, TagTLVEnum.LOG_ENTRY);
+        TagTLV logEntryView = DecodeTLV.findTagTLV(viewTags, TagTLVEnum.LOG_ENTRY);
+
+        assertEquals(logEntryView.getValueLength(), 2);
+        assertEquals(Arrays.equals(logEntryView.getDataObject(), logEntryCopy.getDataObject()), true);
+        assertEquals(DecodeTLV.findTagTLV(viewTags, TagTLVEnum.APPLICATION_LABEL).getDataObjectAsString(), "AppTst");
+
+        ByteBuffer value = logEntryView.getValueBuffer();
+        assertEquals(value.isReadOnly(), true);
+        assertEquals(value.remaining(), 2);
+        assertEquals(value.get(0), (byte) 0x0B);
+        assertEquals(value.get(1), (byte) 0x0A);
+
+        byte[] dest = new byte[4];
+        assertEquals(logEntryView.copyValueTo(dest, 1), 2);
+        assertEquals(Arrays.equals(dest, new byte[] { 0x00, 0x0B, 0x0A, 0x00 }), true);
+
+        // The views share the decoded array
+        data[data.length - 1] = (byte) 0xFF;
+        assertEquals(DecodeTLV.findTagTLV(new DecodeTLV(STRICT_MODE, ZERO_COPY).decode(data), TagTLVEnum.LOG_ENTRY).getValueBuffer().get(1), (byte) 0xFF);
+    }
+
+    @Test
+    public void testDecodeTLVByteBuffer() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testDecodeTLVByteBuffer");
+
+        final boolean STRICT_MODE = true;
+        final boolean ZERO_COPY = true;
+
+        byte[] data = ByteUtil.decodeHex("6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 02 0B 0A");
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length + 4);
+        direct.position(2);
+        direct.put(data);
+        direct.position(2);
+        direct.limit(2 + data.length);
+
+        List<TagTLV> copyTags = new DecodeTLV(STRICT_MODE).decode(direct);
+        List<TagTLV> viewTags = new DecodeTLV(STRICT_MODE, ZERO_COPY).decode(direct, 2, data.length);
+
+        // The position and limit of the buffer are not changed
+        assertEquals(direct.position(), 2);
+        assertEquals(direct.limit(), 2 + data.length);
+
+        TagTLV languageCopy = DecodeTLV.findTagTLV(copyTags, TagTLVEnum.LANGUAGE_PREFERENCE);
+        TagTLV languageView = DecodeTLV.findTagTLV(viewTags, TagTLVEnum.LANGUAGE_PREFERENCE);
+
+        assertEquals(languageCopy.getDataObjectAsString(), "Portugues");
+        assertEquals(languageView.getDataObjectAsString(), "Portugues");
+        assertEquals(languageView.getValueBuffer().isDirect(), true);
+        assertEquals(DecodeTLV.findTagTLV(viewTags, TagTLVEnum.LOG_ENTRY).getValueBuffer().get(0), (byte) 0x0B);
+
+        // Part of the buffer
+        List<TagTLV> logEntry = new DecodeTLV(STRICT_MODE).decode(ByteBuffer.wrap(data), 27, 5);
+        assertEquals(logEntry.size(), 1);
+        assertEquals(logEntry.get(0).getTagId(), TagTLVEnum.LOG_ENTRY.getId());
+
+        assertThrows(IndexOutOfBoundsException.class, () -> new DecodeTLV().decode(ByteBuffer.wrap(data), 27, 6));
+    }
+
+    @Test
+    public void testDecodeTLVFilter() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testDecodeTLVFilter");
+
+        final boolean STRICT_MODE = true;
+
+        byte[] data = ByteUtil.decodeHex("6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 02 0B 0A    70 03 50 01 41    9F 36 02 00 2A");
+
+        DecodeTLV decodeTLV = new DecodeTLV(STRICT_MODE);
+
+        // Only the tags and the constructed tags in the way
+        List<TagTLV> tags = decodeTLV.decode(data, TLVFilter.tags(TagTLVEnum.LOG_ENTRY, TagTLVEnum.APPLICATION_LABEL));
+
+        assertEquals(tags.size(), 2);
+        assertEquals(tags.get(0).getTagId(), 0x6F);
+        assertEquals(tags.get(0).getChildren().size(), 1);
+
+        TagTLV proprietaryTemplate = tags.get(0).getChildren().get(0);
+        assertEquals(proprietaryTemplate.getChildren().size(), 2);
+        assertEquals(proprietaryTemplate.getChildren().get(0).getDataObjectAsString(), "AppTst");
+        assertEquals(proprietaryTemplate.getChildren().get(1).getChildren().get(0).getTagId(), TagTLVEnum.LOG_ENTRY.getId());
+
+        assertEquals(tags.get(1).getTagId(), 0x70);
+        assertEquals(tags.get(1).getChildren().get(0).getDataObjectAsString(), "A");
+
+        // Paths from the top level
+        tags = decodeTLV.decode(data, TLVFilter.paths("70/50", "9F36"));
+
+        assertEquals(tags.size(), 2);
+        assertEquals(tags.get(0).getTagId(), 0x70);
+        assertEquals(tags.get(0).getChildren().size(), 1);
+        assertEquals(tags.get(1).getTagId(), 0x9F36);
+
+        // An accepted constructed tag has all its children
+        tags = decodeTLV.decode(data, TLVFilter.paths("6F/A5"));
+
+        assertEquals(tags.size(), 1);
+        assertEquals(tags.get(0).getChildren().get(0).getChildren().size(), 3);
+
+        assertEquals(decodeTLV.decode(data, TLVFilter.tags(0x5A)).size(), 0);
+
+        // A template that is never entered is skipped by its length
+        byte[] badTemplate = ByteUtil.decodeHex("BF 0C 03 9F 4D 05    50 01 41");
+        assertThrows(DecodeTLVException.class, () -> decodeTLV.decode(badTemplate));
+        assertEquals(decodeTLV.decode(badTemplate, TLVFilter.paths("50")).size(), 1);
+    }
+
+    @Test
+    public void testDecodeTLVLazy() throws Exception {
+
+        System.out.println(getClass().getSimpleName() + ".testDecodeTLVLazy");
+
+        final boolean STRICT_MODE = true;
+        final boolean LAZY = true;
+
+        // Issuer discretionary data with invalid content
+        byte[] data = ByteUtil.decodeHex("6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 05 0B 0A");
+
+        assertThrows(DecodeTLVException.class, () -> new DecodeTLV(STRICT_MODE).decode(data));
+
+        for (boolean zeroCopy : new boolean[] { false, true }) {
+            List<TagTLV> tags = new DecodeTLV(STRICT_MODE, zeroCopy, LAZY).decode(data);
+
+            assertEquals(tags.size(), 1);
+
+            TagTLV proprietaryTemplate = tags.get(0).getChildren().get(0);
+            assertEquals(proprietaryTemplate.getChildren().size(), 3);
+            assertEquals(proprietaryTemplate.getChildren().get(0).getDataObjectAsString(), "AppTst");
+
+            // The children are decoded once
+            assertEquals(tags.get(0).getChildren() == tags.get(0).getChildren(), true);
+
+            TagTLV issuerDiscretionaryData = proprietaryTemplate.getChildren().get(2);
+            assertThrows(IllegalStateException.class, () -> issuerDiscretionaryData.getChildren());
+        }
+
+        // Many threads decode the children of the same tag
+        TagTLV template = new DecodeTLV(STRICT_MODE, true, LAZY).decode(ByteUtil.decodeHex("70 08 50 01 41 70 03 50 01 42")).get(0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<TagTLV>>> results = new ArrayList<Future<List<TagTLV>>>();
+            for (int ct = 0; ct < 8; ct++) {
+                results.add(executor.submit(() -> template.getChildren()));
+            }
+            for (Future<List<TagTLV>> result : results) {
+                assertEquals(result.get() == template.getChildren(), true);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(template.getChildren().get(1).getChildren().get(0).getDataObjectAsString(), "B");
+    }
+
 }
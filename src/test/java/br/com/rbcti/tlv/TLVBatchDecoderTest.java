@@ -0,0 +1,305 @@
+package br.com.rbcti.tlv;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.expectThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.Test;
+
+import br.com.rbcti.tlv.DecodeTLVException.Reason;
+
+/**
+ * Unit tests for the TLVBatchDecoder class.
+ *
+ * @author Renato Cunha
+ *
+ */
+public class TLVBatchDecoderTest {
+
+    private static final int RECORDS = 10000;
+
+    @Test
+    public void testLengthPrefix() throws Exception {
+
+        System.out.println(getClass().getSimpleName() + ".testLengthPrefix");
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            for (TLVBatchDecoder.Framing framing : new TLVBatchDecoder.Framing[] { TLVBatchDecoder.Framing.LENGTH_PREFIX_2, TLVBatchDecoder.Framing.LENGTH_PREFIX_4 }) {
+                byte[] data = records(framing.getPrefixLength());
+
+                TLVBatchDecoder batch = TLVBatchDecoder.builder()
+                        .decoder(TLVDecoder.builder().strict(true).zeroCopy(true).build())
+                        .framing(framing)
+                        .pool(pool)
+                        .batchSize(1000)
+                        .build();
+
+                List<TLVRecord> records = new ArrayList<>();
+                assertEquals(batch.decode(ByteBuffer.wrap(data), records::add), RECORDS);
+                assertEquals(records.size(), RECORDS);
+
+                for (int ct = 0; ct < RECORDS; ct++) {
+                    TLVRecord record = records.get(ct);
+                    assertEquals(record.getIndex(), ct);
+                    assertEquals(record.isSuccess(), true);
+                    assertEquals(record.getTags().get(0).getTagId(), 0x9F02);
+                    assertEquals(ByteUtil.fromBigEndian(record.getTags().get(0).getDataObject()), ct);
+                }
+
+                assertEquals(records.get(1).getOffset(), 2 * framing.getPrefixLength() + 7);
+                assertEquals(records.get(1).getLength(), 7);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnordered() throws Exception {
+
+        System.out.println(getClass().getSimpleName() + ".testUnordered");
+
+        TLVBatchDecoder batch = TLVBatchDecoder.builder().ordered(false).build();
+
+        List<TLVRecord> records = Collections.synchronizedList(new ArrayList<>());
+        assertEquals(batch.decode(ByteBuffer.wrap(records(2)), records::add), RECORDS);
+        assertEquals(records.size(), RECORDS);
+
+        long[] values = new long[RECORDS];
+        for (TLVRecord record : records) {
+            values[(int) record.getIndex()] = ByteUtil.fromBigEndian(record.getTags().get(0).getDataObject()) + 1;
+        }
+        for (int ct = 0; ct < RECORDS; ct++) {
+            assertEquals(values[ct], ct + 1);
+        }
+    }
+
+    @Test
+    public void testTLVFraming() throws Exception {
+
+        System.out.println(getClass().getSimpleName() + ".testTLVFraming");
+
+        // Record 1 is invalid: its child is truncated
+        byte[] data = ByteUtil.decodeHex("70 03 5A 01 12 70 03 5A 05 12 70 04 9F 02 01 33");
+
+        TLVBatchDecoder batch = TLVBatchDecoder.builder()
+                .decoder(TLVDecoder.builder().strict(true).build())
+                .framing(TLVBatchDecoder.Framing.TLV)
+                .batchSize(2)
+                .build();
+
+        Path file = Files.createTempFile("tlv", ".dat");
+        try {
+            Files.write(file, data);
+
+            List<TLVRecord> records = new ArrayList<>();
+            assertEquals(batch.decode(file, records::add), 3);
+
+            assertEquals(records.get(0).getTags().get(0).getTagId(), 0x70);
+            assertEquals(records.get(0).getOffset(), 0);
+            assertEquals(records.get(0).getLength(), 5);
+
+            assertEquals(records.get(1).isSuccess(), false);
+            assertEquals(records.get(1).getTags(), null);
+            assertEquals(records.get(1).getError().getReason(), Reason.VALUE_TRUNCATED);
+            assertEquals(records.get(1).getError().getOffset(), 7);
+
+            assertEquals(records.get(2).getTags().get(0).getChildren().get(0).getTagId(), 0x9F02);
+            assertEquals(records.get(2).getOffset(), 10);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFileWindows() throws Exception {
+
+        System.out.println(getClass().getSimpleName() + ".testFileWindows");
+
+        Path file = Files.createTempFile("tlv", ".dat");
+        try {
+            // Records of 9 bytes straddle the windows of 1000 bytes
+            Files.write(file, records(2));
+
+            TLVBatchDecoder batch = TLVBatchDecoder.builder()
+                    .decoder(TLVDecoder.builder().strict(true).zeroCopy(true).build())
+                    .windowSize(1000)
+                    .build();
+
+            List<TLVRecord> records = new ArrayList<>();
+            assertEquals(batch.decode(file, records::add), RECORDS);
+
+            for (int ct = 0; ct < RECORDS; ct++) {
+                TLVRecord record = records.get(ct);
+                assertEquals(record.getOffset(), ct * 9L + 2);
+                assertEquals(ByteUtil.fromBigEndian(record.getTags().get(0).getDataObject()), ct);
+            }
+
+            // A record of 304 bytes is larger than the window
+            byte[] large = new byte[304 + 5];
+            large[0] = 0x70;
+            large[1] = (byte) 0x82;
+            large[2] = 0x01;
+            large[3] = 0x2C;
+            for (int ct = 4; ct < 304; ct += 3) {
+                large[ct] = 0x5A;
+                large[ct + 1] = 1;
+            }
+            System.arraycopy(ByteUtil.decodeHex("5A 03 04 05 06"), 0, large, 304, 5);
+            Files.write(file, large);
+
+            TLVBatchDecoder tlv = TLVBatchDecoder.builder()
+                    .decoder(TLVDecoder.builder().strict(true).build())
+                    .framing(TLVBatchDecoder.Framing.TLV)
+                    .windowSize(16)
+                    .build();
+
+            records.clear();
+            assertEquals(tlv.decode(file, records::add), 2);
+            assertEquals(records.get(0).getLength(), 304);
+            assertEquals(records.get(0).getTags().get(0).getChildren().size(), 100);
+            assertEquals(records.get(1).getOffset(), 304);
+            assertEquals(records.get(1).getTags().get(0).getDataObject()[2], (byte) 0x06);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testContextsReleased() throws Exception {
+
+        System.out.println(getClass().getSimpleName() + ".testContextsReleased");
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            TLVBatchDecoder batch = TLVBatchDecoder.builder()
+                    .decoder(TLVDecoder.builder().strict(true).zeroCopy(true).build())
+                    .pool(pool)
+                    .build();
+
+            byte[] data = records(2);
+            WeakReference<byte[]> reference = new WeakReference<byte[]>(data);
+
+            long[] tags = new long[1];
+            assertEquals(batch.decode(ByteBuffer.wrap(data), record -> tags[0] += record.getTags().size()), RECORDS);
+            assertEquals(tags[0], RECORDS);
+
+            // The threads of the pool do not keep the tags of their last records, which are views over the data
+            data = null;
+            for (int ct = 0; (ct < 20) && (reference.get() != null); ct++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertEquals(reference.get(), null);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testFileOver2GB() throws Exception {
+
+        System.out.println(getClass().getSimpleName() + ".testFileOver2GB");
+
+        Path file = Files.createTempFile("tlv", ".dat");
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                // A record of almost 2 GB, whose value is not written, then a valid and an invalid record after 2 GB
+                channel.write(ByteBuffer.wrap(ByteUtil.decodeHex("7F FF FF F6 5A 84 7F FF FF F0")), 0L);
+                channel.write(ByteBuffer.wrap(ByteUtil.decodeHex("00 00 00 0A 5A 08 01 02 03 04 05 06 07 08")), 0x7FFFFFFAL);
+                channel.write(ByteBuffer.wrap(ByteUtil.decodeHex("00 00 00 05 70 03 5A 05 01")), 0x80000008L);
+            }
+
+            TLVBatchDecoder batch = TLVBatchDecoder.builder()
+                    .decoder(TLVDecoder.builder().strict(true).zeroCopy(true).build())
+                    .framing(TLVBatchDecoder.Framing.LENGTH_PREFIX_4)
+                    .windowSize(1 << 20)
+                    .build();
+
+            List<TLVRecord> records = new ArrayList<>();
+            assertEquals(batch.decode(file, records::add), 3);
+            assertEquals(records.get(0).getTags().get(0).getValueLength(), 0x7FFFFFF0);
+            assertEquals(records.get(1).getOffset(), 0x7FFFFFFEL);
+            assertEquals(records.get(1).getTags().get(0).getDataObject()[7], (byte) 0x08);
+
+            DecodeTLVException error = records.get(2).getError();
+            assertEquals(error.getReason(), Reason.VALUE_TRUNCATED);
+            assertEquals(error.getLongOffset(), 0x8000000EL);
+            assertEquals(error.getOffset(), -1);
+
+            // The framing errors are also offsets in the file
+            try (FileChannel truncated = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                truncated.write(ByteBuffer.wrap(ByteUtil.decodeHex("00 00 01 00 5A")), 0x80000011L);
+            }
+            records.clear();
+            DecodeTLVException e = expectThrows(DecodeTLVException.class, () -> batch.decode(file, records::add));
+            assertEquals(e.getLongOffset(), 0x80000011L);
+            assertEquals(records.size(), 3);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testInvalidFraming() throws Exception {
+
+        System.out.println(getClass().getSimpleName() + ".testInvalidFraming");
+
+        TLVBatchDecoder strict = TLVBatchDecoder.builder().decoder(TLVDecoder.builder().strict(true).build()).batchSize(1).build();
+
+        // The records before the error are delivered
+        List<TLVRecord> records = new ArrayList<>();
+        DecodeTLVException e = expectThrows(DecodeTLVException.class,
+                () -> strict.decode(ByteBuffer.wrap(ByteUtil.decodeHex("00 03 5A 01 12 00 05 5A 01 12")), records::add));
+        assertEquals(e.getReason(), Reason.VALUE_TRUNCATED);
+        assertEquals(e.getOffset(), 5);
+        assertEquals(records.size(), 1);
+
+        e = expectThrows(DecodeTLVException.class, () -> strict.decode(ByteBuffer.wrap(ByteUtil.decodeHex("00 03 5A 01 12 00")), r -> { }));
+        assertEquals(e.getReason(), Reason.INCOMPLETE_DATA);
+
+        // Non-strict mode fixes the length of the last record
+        TLVBatchDecoder lenient = TLVBatchDecoder.builder().build();
+        records.clear();
+        assertEquals(lenient.decode(ByteBuffer.wrap(ByteUtil.decodeHex("00 03 5A 01 12 00 05 5A 01 12")), records::add), 2);
+        assertEquals(records.get(1).getLength(), 3);
+
+        assertThrows(IllegalArgumentException.class, () -> TLVBatchDecoder.builder().batchSize(0));
+        assertThrows(IllegalArgumentException.class, () -> TLVBatchDecoder.builder().framing(null));
+    }
+
+    /**
+     * @return {@link #RECORDS} records, each one a 9F02 tag with its index.
+     */
+    private static byte[] records(int prefixLength) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int ct = 0; ct < RECORDS; ct++) {
+            for (int shift = (prefixLength - 1) * 8; shift >= 0; shift -= 8) {
+                out.write(7 >>> shift);
+            }
+            out.write(0x9F);
+            out.write(0x02);
+            out.write(4);
+            out.write(ct >>> 24);
+            out.write(ct >>> 16);
+            out.write(ct >>> 8);
+            out.write(ct);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,109 @@
+package br.com.rbcti.tlv;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import br.com.rbcti.tlv.DecodeTLVException.Reason;
+
+/**
+ * Unit tests for the TLVDecodeMetrics class.
+ *
+ * @author Renato Cunha
+ *
+ */
+public class TLVDecodeMetricsTest {
+
+    private static final String FCI = "6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 02 0B 0A";
+
+    @Test
+    public void testMetrics() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testMetrics");
+
+        TLVDecodeMetrics metrics = new TLVDecodeMetrics();
+        TLVDecoder decoder = TLVDecoder.builder().strict(true).lazy(true).listener(metrics).build();
+        DecodeTLV decodeTLV = new DecodeTLV(decoder);
+
+        byte[] fci = ByteUtil.decodeHex(FCI);
+        decodeTLV.decode(fci);
+
+        // The children decoded later are part of the same message
+        List<TagTLV> tags = decoder.decode(fci);
+        tags.get(0).getChildren().get(0).getChildren();
+
+        assertEquals(metrics.getMessages(), 2);
+        assertEquals(metrics.getBytes(), 2 * fci.length);
+        assertEquals(metrics.getTags(), 2);
+        assertEquals(metrics.getMaxDepth(), 1);
+
+        TLVDecoder eager = TLVDecoder.builder().strict(true).listener(metrics).build();
+        eager.decode(fci);
+
+        assertEquals(metrics.getMessages(), 3);
+        assertEquals(metrics.getTags(), 2 + 6);
+        assertEquals(metrics.getMaxTags(), 6);
+        assertEquals(metrics.getMaxDepth(), 4);
+
+        // Thrown and returned errors
+        assertThrows(DecodeTLVException.class, () -> eager.decode(ByteUtil.decodeHex("50 05 41 42")));
+        eager.tryDecode(ByteBuffer.wrap(ByteUtil.decodeHex("50")), new TLVDecodeContext());
+
+        assertEquals(metrics.getMessages(), 3);
+        assertEquals(metrics.getFailures(Reason.VALUE_TRUNCATED), 1);
+        assertEquals(metrics.getFailures(Reason.TAG_WITHOUT_LENGTH), 1);
+        assertEquals(metrics.getFailures(), 2);
+
+        long latencies = 0;
+        for (long count : metrics.getLatencyHistogram()) {
+            latencies += count;
+        }
+        assertEquals(latencies, 5);
+
+        metrics.reset();
+        assertEquals(metrics.getMessages(), 0);
+        assertEquals(metrics.getFailures(), 0);
+        assertEquals(metrics.getMaxDepth(), 0);
+    }
+
+    @Test
+    public void testTruncations() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testTruncations");
+
+        int[] truncated = new int[4];
+
+        TLVDecoder decoder = TLVDecoder.builder().listener(new TLVDecodeListener() {
+            @Override
+            public void truncated(int tagId, int offset, int length, int available) {
+                truncated[0] = tagId;
+                truncated[1] = offset;
+                truncated[2] = length;
+                truncated[3] = available;
+            }
+        }).build();
+
+        decoder.decode(ByteUtil.decodeHex("5A 01 12 50 05 41 42"));
+
+        assertEquals(truncated[0], 0x50);
+        assertEquals(truncated[1], 3);
+        assertEquals(truncated[2], 5);
+        assertEquals(truncated[3], 2);
+
+        TLVDecodeMetrics metrics = new TLVDecodeMetrics();
+        TLVDecoder counted = TLVDecoder.builder().listener(metrics).build();
+        counted.decode(ByteUtil.decodeHex("70 08 50 05 41 42"));
+
+        assertEquals(metrics.getTruncations(), 2);
+        assertEquals(metrics.getMessages(), 1);
+
+        assertEquals(TLVDecoder.builder().build().getListener(), TLVDecodeListener.NONE);
+        assertEquals(counted.getListener(), metrics);
+        assertThrows(IllegalArgumentException.class, () -> TLVDecoder.builder().listener(null));
+    }
+
+}
@@ -0,0 +1,370 @@
+package br.com.rbcti.tlv;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.expectThrows;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the TLVDecoder class.
+ *
+ * @author Renato Cunha
+ *
+ */
+public class TLVDecoderTest {
+
+    private static final String FCI = "6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 02 0B 0A";
+
+    @Test
+    public void testBuilder() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testBuilder");
+
+        TLVDecoder defaultDecoder = TLVDecoder.builder().build();
+
+        assertEquals(defaultDecoder.isStrict(), false);
+        assertEquals(defaultDecoder.isZeroCopy(), false);
+        assertEquals(defaultDecoder.isLazy(), false);
+        assertEquals(defaultDecoder.getFilter(), null);
+
+        // Non-strict mode fixes the length
+        assertEquals(defaultDecoder.decode(ByteUtil.decodeHex("50 05 41 42")).get(0).getDataObjectAsString(), "AB");
+
+        TLVDecoder strictDecoder = TLVDecoder.builder().strict(true).build();
+        assertThrows(DecodeTLVException.class, () -> strictDecoder.decode(ByteUtil.decodeHex("50 05 41 42")));
+
+        TLVDecoder filterDecoder = TLVDecoder.builder().strict(true).zeroCopy(true).filter(TLVFilter.paths("6F/A5/50")).build();
+        List<TagTLV> tags = filterDecoder.decode(ByteBuffer.wrap(ByteUtil.decodeHex(FCI)));
+
+        assertEquals(tags.get(0).getChildren().get(0).getChildren().size(), 1);
+        assertEquals(tags.get(0).getChildren().get(0).getChildren().get(0).getDataObjectAsString(), "AppTst");
+
+        // DecodeTLV uses the decoder and keeps the last result
+        DecodeTLV decodeTLV = new DecodeTLV(filterDecoder);
+        assertEquals(decodeTLV.getDecoder() == filterDecoder, true);
+        assertEquals(decodeTLV.isZeroCopy(), true);
+    }
+
+    @Test
+    public void testContextReuse() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testContextReuse");
+
+        TLVDecoder decoder = TLVDecoder.builder().strict(true).filter(TLVFilter.tags(0x9F4D)).build();
+        TLVDecodeContext context = new TLVDecodeContext();
+
+        // More levels than the initial size of the path
+        StringBuilder nested = new StringBuilder();
+        for (int level = 0; level < 20; level++) {
+            nested.append("E1 ").append(String.format("%02X ", (19 - level) * 2 + 4));
+        }
+        nested.append("9F 4D 01 FF");
+
+        for (int ct = 0; ct < 3; ct++) {
+            List<TagTLV> tags = decoder.decode(ByteUtil.decodeHex(nested.toString()), context);
+            assertEquals(DecodeTLV.findTagTLV(tags, 0x9F4D).getDataObject()[0], (byte) 0xFF);
+
+            tags = decoder.decode(ByteUtil.decodeHex(FCI), context);
+            assertEquals(DecodeTLV.findTagTLV(tags, 0x9F4D).getValueLength(), 2);
+        }
+    }
+
+    @Test
+    public void testSharedDecoder() throws Exception {
+
+        System.out.println(getClass().getSimpleName() + ".testSharedDecoder");
+
+        final TLVDecoder decoder = TLVDecoder.builder().strict(true).zeroCopy(true).build();
+        final int threads = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+            for (int thread = 0; thread < threads; thread++) {
+                final int value = thread;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        TLVDecodeContext context = new TLVDecodeContext();
+                        byte[] data = ByteUtil.decodeHex("70 08 9F 36 02 00 00 50 01 41");
+                        for (int ct = 0; ct < 10000; ct++) {
+                            data[5] = (byte) value;
+                            data[6] = (byte) ct;
+                            TagTLV atc = DecodeTLV.findTagTLV(decoder.decode(data, context), 0x9F36);
+                            if ((atc.getValueBuffer().get(0) != (byte) value) || (atc.getValueBuffer().get(1) != (byte) ct)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+
+            for (Future<Boolean> result : results) {
+                assertEquals(result.get().booleanValue(), true);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testArena() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testArena");
+
+        byte[] fci = ByteUtil.decodeHex(FCI);
+        byte[] card = ByteUtil.decodeHex("70 0E 5A 08 47 61 73 90 01 01 00 10 5F 34 01 01");
+
+        for (boolean zeroCopy : new boolean[] { false, true }) {
+            TLVDecoder decoder = TLVDecoder.builder().strict(true).zeroCopy(zeroCopy).build();
+            TLVDecodeContext context = new TLVDecodeContext(true);
+
+            assertEquals(context.isArena(), true);
+            assertEquals(new TLVDecodeContext().isArena(), false);
+
+            List<TagTLV> first = decoder.decode(fci, context);
+            TagTLV fciTag = first.get(0);
+            assertEquals(DecodeTLV.findTagTLV(first, 0x50).getDataObjectAsString(), "AppTst");
+
+            // Without reset the tags of both messages are valid
+            List<TagTLV> second = decoder.decode(card, context);
+            assertEquals(fciTag.getTagId(), 0x6F);
+            assertEquals(DecodeTLV.findTagTLV(first, 0x9F4D).getValueLength(), 2);
+            assertEquals(second.get(0) != fciTag, true);
+            assertEquals(Arrays.equals(DecodeTLV.findTagTLV(second, 0x5A).getDataObject(), ByteUtil.decodeHex("47 61 73 90 01 01 00 10")), true);
+
+            // After the reset the tags and lists are recycled
+            context.reset();
+            List<TagTLV> third = decoder.decode(card, context);
+            assertEquals(third == first, true);
+            assertEquals(third.get(0) == fciTag, true);
+            assertEquals(third.size(), 1);
+            assertEquals(fciTag.getTagId(), 0x70);
+            assertEquals(fciTag.getChildren().size(), 2);
+            assertEquals(DecodeTLV.findTagTLV(third, 0x5F34).getDataObject()[0], (byte) 0x01);
+            assertEquals(Arrays.equals(DecodeTLV.findTagTLV(third, 0x5A).getDataObject(), ByteUtil.decodeHex("47 61 73 90 01 01 00 10")), true);
+
+            // Primitive tags reused as constructed ones and the other way
+            context.reset();
+            List<TagTLV> fourth = decoder.decode(fci, context);
+            assertEquals(fourth.get(0).getChildren().get(0).getChildren().size(), 3);
+            assertEquals(DecodeTLV.findTagTLV(fourth, 0x5F2D).getChildren(), null);
+            assertEquals(DecodeTLV.findTagTLV(fourth, 0x5F2D).getDataObjectAsString(), "Portugues");
+
+            // The selected tags of a filter
+            TLVDecoder filterDecoder = TLVDecoder.builder().strict(true).zeroCopy(zeroCopy).filter(TLVFilter.paths("6F/A5/50")).build();
+            context.reset();
+            List<TagTLV> selected = filterDecoder.decode(fci, context);
+            assertEquals(selected.get(0).getChildren().get(0).getChildren().size(), 1);
+            assertEquals(selected.get(0).getChildren().get(0).getChildren().get(0).getDataObjectAsString(), "AppTst");
+        }
+
+        // Values larger than the storage of the arena
+        byte[] large = Arrays.copyOf(ByteUtil.decodeHex("DF 01 82 0B B8"), 5 + 3000);
+        large[5 + 2999] = 0x7F;
+
+        TLVDecodeContext context = new TLVDecodeContext(true);
+        TLVDecoder decoder = TLVDecoder.builder().strict(true).build();
+        TagTLV small = decoder.decode(card, context).get(0).getChildren().get(1);
+        TagTLV big = decoder.decode(large, context).get(0);
+        assertEquals(big.getValueLength(), 3000);
+        assertEquals(big.getDataObject()[2999], (byte) 0x7F);
+        assertEquals(small.getDataObject()[0], (byte) 0x01);
+    }
+
+    @Test
+    public void testDeepNesting() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testDeepNesting");
+
+        final int levels = 100000;
+        byte[] data = nested(levels);
+
+        // The decoding does not recurse, the depth is limited only by the data
+        assertEquals(innermost(TLVDecoder.builder().strict(true).zeroCopy(true).build().decode(data), levels).getTagId(), 0x9F4D);
+
+        TLVDecoder limited = TLVDecoder.builder().strict(true).zeroCopy(true).maxDepth(levels).build();
+
+        DecodeTLVException e = expectThrows(DecodeTLVException.class, () -> limited.decode(data));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.DEPTH_LIMIT);
+        assertEquals(e.getOffset(), levels * 5);
+
+        // The filters are also decoded without recursion
+        TLVDecoder filtered = TLVDecoder.builder().strict(true).zeroCopy(true).maxDepth(levels).filter(TLVFilter.tags(0x9F4D)).build();
+        e = expectThrows(DecodeTLVException.class, () -> filtered.decode(data));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.DEPTH_LIMIT);
+
+        TLVDecoder filteredDeeper = TLVDecoder.builder().strict(true).zeroCopy(true).maxDepth(levels + 1).filter(TLVFilter.tags(0x9F4D)).build();
+        assertEquals(innermost(filteredDeeper.decode(data), levels).getDataObject()[0], (byte) 0xFF);
+
+        // A selected constructed tag at the depth where the stack grows, its children are decoded one level below
+        byte[] selected = ByteUtil.decodeHex("E2 07 E3 05 E3 03 5A 01 01");
+        for (int ct = 0; ct < 8; ct++) {
+            byte[] wrapped = new byte[selected.length + 2];
+            wrapped[0] = (byte) 0xE1;
+            wrapped[1] = (byte) selected.length;
+            System.arraycopy(selected, 0, wrapped, 2, selected.length);
+            selected = wrapped;
+        }
+        List<TagTLV> tags = TLVDecoder.builder().strict(true).filter(TLVFilter.tags(0xE2)).build().decode(selected);
+        assertEquals(innermost(tags, 8).getTagId(), 0xE2);
+        assertEquals(innermost(tags, 11).getDataObject()[0], (byte) 0x01);
+    }
+
+    @Test
+    public void testLimits() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testLimits");
+
+        byte[] fci = ByteUtil.decodeHex(FCI);
+
+        // 6F, A5, 50, 5F2D, BF0C and 9F4D
+        assertEquals(TLVDecoder.builder().maxTags(6).build().decode(fci).size(), 1);
+
+        DecodeTLVException e = expectThrows(DecodeTLVException.class, () -> TLVDecoder.builder().maxTags(5).build().decode(fci));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.TAG_COUNT_LIMIT);
+        assertEquals(e.getOffset(), 27);
+
+        assertEquals(TLVDecoder.builder().maxDepth(4).build().decode(fci).size(), 1);
+
+        e = expectThrows(DecodeTLVException.class, () -> TLVDecoder.builder().maxDepth(3).build().decode(fci));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.DEPTH_LIMIT);
+        assertEquals(e.getOffset(), 27);
+
+        // 30 + 28 + 6 + 9 + 5 + 2
+        assertEquals(TLVDecoder.builder().maxValueBytes(80).build().decode(fci).size(), 1);
+
+        e = expectThrows(DecodeTLVException.class, () -> TLVDecoder.builder().maxValueBytes(79).build().decode(fci));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.VALUE_BYTES_LIMIT);
+        assertEquals(e.getOffset(), 27);
+
+        // A large value is rejected before it is copied
+        byte[] large = new byte[4096];
+        System.arraycopy(ByteUtil.decodeHex("DF 01 82 0F FB"), 0, large, 0, 5);
+        e = expectThrows(DecodeTLVException.class, () -> TLVDecoder.builder().maxValueBytes(1024).build().decode(large));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.VALUE_BYTES_LIMIT);
+        assertEquals(e.getOffset(), 0);
+
+        // Errors of the data
+        e = expectThrows(DecodeTLVException.class, () -> TLVDecoder.builder().strict(true).build().decode(ByteUtil.decodeHex("50 01 41 9F 4D 05 41")));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.VALUE_TRUNCATED);
+        assertEquals(e.getOffset(), 3);
+
+        e = expectThrows(DecodeTLVException.class, () -> TLVDecoder.builder().build().decode(ByteUtil.decodeHex("50 01 41 9F 4D")));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.TAG_WITHOUT_LENGTH);
+        assertEquals(e.getOffset(), 3);
+
+        e = expectThrows(DecodeTLVException.class, () -> TLVDecoder.builder().build().decode(ByteUtil.decodeHex("70 05 50 85 00 00 00 00 01")));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.LENGTH_FIELD_TOO_LONG);
+        assertEquals(e.getOffset(), 2);
+
+        e = expectThrows(DecodeTLVException.class, () -> TLVDecoder.builder().build().decode(ByteUtil.decodeHex("50 82 01")));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.LENGTH_FIELD_INCOMPLETE);
+        assertEquals(e.getOffset(), 0);
+
+        assertThrows(IllegalArgumentException.class, () -> TLVDecoder.builder().maxDepth(0));
+    }
+
+    @Test
+    public void testTryDecode() {
+
+        System.out.println(getClass().getSimpleName() + ".testTryDecode");
+
+        TLVDecoder decoder = TLVDecoder.builder().strict(true).zeroCopy(true).maxDepth(2).build();
+        TLVDecodeContext context = new TLVDecodeContext();
+
+        DecodeResult result = decoder.tryDecode(ByteBuffer.wrap(ByteUtil.decodeHex("50 01 41 9F 4D 05 41")), context);
+
+        assertEquals(result.isSuccess(), false);
+        assertEquals(result.getTags(), null);
+        assertEquals(result.getReason(), DecodeTLVException.Reason.VALUE_TRUNCATED);
+        assertEquals(result.getOffset(), 3);
+        assertEquals(result.getTagId(), 0x9F4D);
+        assertEquals(result.toException().getMessage(), "Invalid data length for 40781 TAG.");
+
+        // The result is reused by the context
+        assertEquals(decoder.tryDecode(ByteBuffer.wrap(ByteUtil.decodeHex("70 03 50 01 41")), context) == result, true);
+        assertEquals(result.isSuccess(), true);
+        assertEquals(result.getReason(), null);
+        assertEquals(result.getOffset(), -1);
+        assertEquals(result.getTags().get(0).getChildren().get(0).getValueLength(), 1);
+
+        result = decoder.tryDecode(ByteBuffer.wrap(ByteUtil.decodeHex(FCI)), 0, 32, context);
+        assertEquals(result.getReason(), DecodeTLVException.Reason.DEPTH_LIMIT);
+        assertEquals(result.getOffset(), 4);
+        assertEquals(result.getLimit(), 2);
+
+        assertThrows(IllegalStateException.class, () -> decoder.tryDecode(ByteBuffer.wrap(ByteUtil.decodeHex("50 01 41")), context).toException());
+    }
+
+    @Test
+    public void testExceptionMessages() {
+
+        System.out.println(getClass().getSimpleName() + ".testExceptionMessages");
+
+        TLVDecoder decoder = TLVDecoder.builder().build();
+
+        DecodeTLVException e = expectThrows(DecodeTLVException.class, () -> decoder.decode(ByteUtil.decodeHex("9F")));
+        assertEquals(e.getMessage(), "Invalid TLV data. 9f tag without size field.");
+
+        e = expectThrows(DecodeTLVException.class, () -> decoder.decode(ByteUtil.decodeHex("9F 4D")));
+        assertEquals(e.getMessage(), "Invalid TLV data. 9f 4d tag without length field.");
+
+        e = expectThrows(DecodeTLVException.class, () -> decoder.decode(ByteUtil.decodeHex("50 85 00 00 00 00 01")));
+        assertEquals(e.getMessage(), "Maximum size is 4 bytes.");
+
+        e = expectThrows(DecodeTLVException.class, () -> decoder.decode(ByteUtil.decodeHex("50 82 01")));
+        assertEquals(e.getMessage(), "Invalid TLV data. Length field of 80 TAG is incomplete.");
+
+        e = expectThrows(DecodeTLVException.class, () -> decoder.decode(ByteUtil.decodeHex("50 84 80 00 00 00")));
+        assertEquals(e.getMessage(), "The maximum value of the length field is " + Integer.MAX_VALUE);
+
+        e = expectThrows(DecodeTLVException.class, () -> TLVDecoder.builder().maxTags(1).build().decode(ByteUtil.decodeHex("50 00 50 00")));
+        assertEquals(e.getMessage(), "The maximum number of data objects is 1.");
+        assertEquals(e.getLimit(), 1);
+    }
+
+    static TagTLV innermost(List<TagTLV> tags, int levels) {
+        TagTLV tag = tags.get(0);
+        for (int level = 0; level < levels; level++) {
+            tag = tag.getChildren().get(0);
+        }
+        return tag;
+    }
+
+    /**
+     * E1 83 xx xx xx ... E1 83 00 00 04 9F 4D 01 FF
+     */
+    static byte[] nested(int levels) {
+        byte[] data = new byte[levels * 5 + 4];
+        int pos = data.length - 4;
+        data[pos] = (byte) 0x9F;
+        data[pos + 1] = 0x4D;
+        data[pos + 2] = 0x01;
+        data[pos + 3] = (byte) 0xFF;
+
+        for (int level = 0; level < levels; level++) {
+            int len = data.length - pos;
+            data[--pos] = (byte) len;
+            data[--pos] = (byte) (len >> 8);
+            data[--pos] = (byte) (len >> 16);
+            data[--pos] = (byte) 0x83;
+            data[--pos] = (byte) 0xE1;
+        }
+        return data;
+    }
+
+}
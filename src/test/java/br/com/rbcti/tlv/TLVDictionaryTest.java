@@ -0,0 +1,106 @@
+package br.com.rbcti.tlv;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.expectThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the TLVDictionary class.
+ *
+ * @author Renato Cunha
+ *
+ */
+public class TLVDictionaryTest {
+
+    @Test
+    public void testEmv() {
+
+        System.out.println(getClass().getSimpleName() + ".testEmv");
+
+        TLVDictionary emv = TLVDictionary.emv();
+
+        // All the tags of TagTLVEnum are in the dictionary
+        for (TagTLVEnum tag : TagTLVEnum.values()) {
+            assertEquals(emv.get(tag).getTagId(), tag.getId());
+            assertEquals(tag.getTag() == emv.get(tag), true);
+            assertEquals(TagTLVEnum.valueOf(tag.getId()), tag);
+        }
+        assertEquals(TagTLVEnum.valueOf(0x9F02), null);
+
+        TLVTag amount = emv.get(0x9F02);
+        assertEquals(amount.getName(), "Amount, Authorised (Numeric)");
+        assertEquals(amount.getFormat(), TLVTag.Format.N);
+        assertEquals(amount.getMinLength(), 6);
+        assertEquals(amount.getMaxLength(), 6);
+        assertEquals(amount.isConstructed(), false);
+        assertEquals(amount.isValidLength(6), true);
+        assertEquals(amount.isValidLength(5), false);
+
+        assertEquals(emv.get(0x5A).getFormat(), TLVTag.Format.CN);
+        assertEquals(emv.get(0x50).getFormat(), TLVTag.Format.ANS);
+        assertEquals(emv.get(0x5F2D).getFormat(), TLVTag.Format.AN);
+        assertEquals(emv.get(0xBF0C).isConstructed(), true);
+        assertEquals(emv.get(0x70).isConstructed(), true);
+        assertEquals(emv.get(0xDF8101), null);
+        assertEquals(emv.contains(0x9F36), true);
+        assertEquals(emv.size(), emv.getTags().size());
+    }
+
+    @Test
+    public void testUserTags() throws IOException {
+
+        System.out.println(getClass().getSimpleName() + ".testUserTags");
+
+        String kernelTags = "# kernel tags\n\nDF8101  b  1  32  Kernel Data\n9F02    b  4  4   Amount in binary\n";
+
+        TLVDictionary dictionary = TLVDictionary.builder()
+                .addAll(TLVDictionary.emv())
+                .load(new ByteArrayInputStream(kernelTags.getBytes(StandardCharsets.UTF_8)))
+                .add(new TLVTag(0xFF8102, "Kernel Template", TLVTag.Format.B, 0, 255))
+                .build();
+
+        assertEquals(dictionary.size(), TLVDictionary.emv().size() + 2);
+        assertEquals(dictionary.get(0xDF8101).getName(), "Kernel Data");
+        assertEquals(dictionary.get(0xFF8102).isConstructed(), true);
+        // A tag added again replaces the previous one
+        assertEquals(dictionary.get(0x9F02).getFormat(), TLVTag.Format.B);
+        assertEquals(TLVDictionary.emv().get(0x9F02).getFormat(), TLVTag.Format.N);
+
+        TagTLV tag = new TagTLV(0xDF8101, 0xDF, new byte[] { 1 });
+        assertEquals(tag.getDescripton(), "");
+
+        TLVDictionary.setDefault(dictionary);
+        try {
+            assertEquals(tag.getDescripton(), "Kernel Data");
+            assertEquals(tag.getTag().getMaxLength(), 32);
+        } finally {
+            TLVDictionary.setDefault(null);
+        }
+
+        assertEquals(tag.getTag(), null);
+
+        // The enum names are kept
+        assertEquals(new TagTLV(0x50, 0x50, new byte[] { 0x41 }).getDescripton(), "APPLICATION_LABEL");
+        assertEquals(new TagTLV(0x9F36, 0x9F, new byte[] { 0, 1 }).getDescripton(), "Application Transaction Counter (ATC)");
+
+        assertThrows(IllegalArgumentException.class, () -> TLVDictionary.builder()
+                .load(new ByteArrayInputStream("9F02 x 1 1 Invalid format".getBytes(StandardCharsets.UTF_8))));
+        assertThrows(IllegalArgumentException.class, () -> TLVDictionary.builder()
+                .load(new ByteArrayInputStream("9F02 n 6".getBytes(StandardCharsets.UTF_8))));
+
+        // The tag is not truncated nor signed
+        for (String invalid : new String[] { "+9F02", "-1", "19F0200000", "9F2", "9F0G", "\u0669F02" }) {
+            IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> TLVDictionary.builder()
+                    .load(new ByteArrayInputStream(("# user tags\n" + invalid + " n 6 6 Amount").getBytes(StandardCharsets.UTF_8))));
+            assertEquals(e.getMessage(), "Invalid tag at line 2: " + invalid + " n 6 6 Amount");
+        }
+        assertThrows(IllegalArgumentException.class, () -> new TLVTag(0x9F02, "Amount", TLVTag.Format.N, 6, 5));
+    }
+
+}
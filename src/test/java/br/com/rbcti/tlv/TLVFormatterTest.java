@@ -0,0 +1,121 @@
+package br.com.rbcti.tlv;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the TLVFormatter class.
+ *
+ * @author Renato Cunha
+ *
+ */
+public class TLVFormatterTest {
+
+    private static final String FCI = "6F 0A A5 08 50 06 41 70 70 54 73 74";
+
+    // 5A PAN, 57 Track 2, 9F36 ATC and an empty 9F4D
+    private static final String CARD = "70 1B 5A 08 47 61 73 90 01 01 00 1F 57 07 47 61 73 90 01 01 D2 9F 36 02 01 2C 9F 4D 00";
+
+    @Test
+    public void testStyles() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testStyles");
+
+        List<TagTLV> tags = new DecodeTLV(true).decode(ByteUtil.decodeHex(FCI));
+
+        assertEquals(TLVFormatter.builder().build().format(tags),
+                "6F FILE_CONTROL_INFORMATION_TEMPLATE [10]\n"
+                + "  A5 FILE_CONTROL_INFORMATION_PROPRIETARY_TEMPLATE [8]\n"
+                + "    50 APPLICATION_LABEL [6] 41 70 70 54 73 74 \"AppTst\"\n");
+
+        assertEquals(TLVFormatter.builder().style(TLVFormatter.Style.ONE_LINE).build().format(tags),
+                "6F{A5{50=417070547374}}");
+
+        assertEquals(TLVFormatter.builder().style(TLVFormatter.Style.JSON).build().format(tags),
+                "[{\"tag\":\"6F\",\"length\":10,\"children\":[{\"tag\":\"A5\",\"length\":8,\"children\":"
+                + "[{\"tag\":\"50\",\"length\":6,\"value\":\"417070547374\"}]}]}]");
+
+        assertEquals(TLVFormatter.builder().style(TLVFormatter.Style.JSON).build().format(new DecodeTLV().decode(new byte[0])), "[]");
+    }
+
+    @Test
+    public void testMask() throws DecodeTLVException, IOException {
+
+        System.out.println(getClass().getSimpleName() + ".testMask");
+
+        byte[] data = ByteUtil.decodeHex(CARD);
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+
+        // Values copied, views over an array and views over a direct buffer give the same text
+        List<List<TagTLV>> decodings = Arrays.asList(new DecodeTLV(true).decode(data), new DecodeTLV(true, true).decode(data),
+                new DecodeTLV(true, true, true).decode(direct));
+        for (List<TagTLV> tags : decodings) {
+
+            TLVFormatter oneLine = TLVFormatter.builder().style(TLVFormatter.Style.ONE_LINE).build();
+            assertEquals(oneLine.format(tags, new StringWriter()).toString(),
+                    "70{5A=**************** 57=************** 9F36=012c 9F4D=}");
+
+            TLVFormatter tree = TLVFormatter.builder().indent(1).maskChar('#').build();
+            assertEquals(tree.format(tags),
+                    "70 READ RECORD Response Message Template [27]\n"
+                    + " 5A Application Primary Account Number (PAN) [8] ## ## ## ## ## ## ## ##\n"
+                    + " 57 Track 2 Equivalent Data [7] ## ## ## ## ## ## ##\n"
+                    + " 9F36 Application Transaction Counter (ATC) [2] 01 2c\n"
+                    + " 9F4D LOG_ENTRY [0]\n");
+
+            // The masked tags are replaced
+            TLVFormatter atcMasked = TLVFormatter.builder().style(TLVFormatter.Style.ONE_LINE).noMask().mask(0x9F36).build();
+            assertEquals(atcMasked.isMasked(0x5A), false);
+            assertEquals(atcMasked.format(tags), "70{5A=476173900101001f 57=476173900101d2 9F36=**** 9F4D=}");
+
+            TLVFormatter json = TLVFormatter.builder().style(TLVFormatter.Style.JSON).noMask().mask(TagTLVEnum.LOG_ENTRY).build();
+            assertEquals(json.isMasked(0x9F4D), true);
+            assertEquals(json.format(tags).contains("\"value\":\"476173900101001f\""), true);
+
+            // A masked template hides its children
+            TLVFormatter templateMasked = TLVFormatter.builder().style(TLVFormatter.Style.ONE_LINE).noMask().mask(0x70).build();
+            assertEquals(templateMasked.format(tags), "70=" + String.join("", Collections.nCopies(27, "**")));
+            assertEquals(TLVFormatter.builder().noMask().mask(0x70).build().format(tags).contains("47 61 73"), false);
+            assertEquals(TLVFormatter.builder().style(TLVFormatter.Style.JSON).noMask().mask(0x70).build().format(tags)
+                    .contains("children"), false);
+        }
+    }
+
+    @Test
+    public void testDeepNesting() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testDeepNesting");
+
+        final int levels = 10000;
+
+        // E1 82 xx xx ... 50 01 41
+        byte[] data = new byte[levels * 4 + 3];
+        int pos = data.length - 3;
+        data[pos] = 0x50;
+        data[pos + 1] = 0x01;
+        data[pos + 2] = 0x41;
+        for (int level = 0; level < levels; level++) {
+            int len = data.length - pos;
+            data[--pos] = (byte) len;
+            data[--pos] = (byte) (len >> 8);
+            data[--pos] = (byte) 0x82;
+            data[--pos] = (byte) 0xE1;
+        }
+
+        String text = TLVFormatter.builder().style(TLVFormatter.Style.ONE_LINE).build()
+                .format(new DecodeTLV(true, true).decode(data));
+
+        assertEquals(text.length(), levels * 4 + "50=41".length());
+        assertEquals(text.substring(levels * 3, levels * 3 + 5), "50=41");
+    }
+
+}
@@ -0,0 +1,176 @@
+package br.com.rbcti.tlv;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.expectThrows;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the TLVIncrementalDecoder class.
+ *
+ * @author Renato Cunha
+ *
+ */
+public class TLVIncrementalDecoderTest {
+
+    private static final String FCI = "6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 02 0B 0A";
+    private static final String LOG_ENTRY = "9F 4D 81 03 01 02 03";
+    private static final String EMPTY = "5F 2D 00";
+    // the longest header: 4 bytes of tag and 5 bytes of length
+    private static final String LONGEST_HEADER = "DF 81 82 02 84 00 00 00 01 AA";
+
+    @Test
+    public void testFeedAnyChunkSize() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testFeedAnyChunkSize");
+
+        byte[] data = ByteUtil.decodeHex(FCI + LOG_ENTRY + EMPTY + LONGEST_HEADER);
+
+        for (int chunkSize = 1; chunkSize <= data.length; chunkSize++) {
+            List<TagTLV> tags = new ArrayList<TagTLV>();
+            TLVIncrementalDecoder decoder = new TLVIncrementalDecoder(true, tags::add);
+
+            for (int offset = 0; offset < data.length; offset += chunkSize) {
+                decoder.feed(ByteBuffer.wrap(data, offset, Math.min(chunkSize, data.length - offset)));
+            }
+            decoder.finish();
+
+            assertEquals(tags.size(), 4);
+            assertEquals(tags.get(0).getTagId(), TagTLVEnum.FILE_CONTROL_INFORMATION_TEMPLATE.getId());
+            assertEquals(DecodeTLV.findTagTLV(tags, TagTLVEnum.APPLICATION_LABEL).getDataObjectAsString(), "AppTst");
+            assertEquals(Arrays.equals(tags.get(1).getDataObject(), new byte[] { 1, 2, 3 }), true);
+            assertEquals(tags.get(2).getValueLength(), 0);
+            assertEquals(tags.get(3).getTagId(), 0xDF818202);
+            assertEquals(tags.get(3).getDataObject()[0], (byte) 0xAA);
+        }
+    }
+
+    @Test
+    public void testDeliverAsSoonAsComplete() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testDeliverAsSoonAsComplete");
+
+        List<TagTLV> tags = new ArrayList<TagTLV>();
+        TLVIncrementalDecoder decoder = new TLVIncrementalDecoder(true, tags::add);
+
+        decoder.feed(ByteBuffer.wrap(ByteUtil.decodeHex("9F 4D 81")));
+        assertEquals(tags.size(), 0);
+        assertEquals(decoder.isPartial(), true);
+
+        decoder.feed(ByteBuffer.wrap(ByteUtil.decodeHex("03 01 02 03  50")));
+        assertEquals(tags.size(), 1);
+        assertEquals(decoder.getPendingBytes(), 1);
+
+        decoder.feed(ByteBuffer.wrap(ByteUtil.decodeHex("03 41 42 43")));
+        assertEquals(tags.size(), 2);
+        assertEquals(tags.get(1).getDataObjectAsString(), "ABC");
+        assertEquals(decoder.isPartial(), false);
+    }
+
+    @Test
+    public void testFinishTruncated() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testFinishTruncated");
+
+        List<TagTLV> tags = new ArrayList<TagTLV>();
+
+        TLVIncrementalDecoder strictDecoder = new TLVIncrementalDecoder(true, tags::add);
+        strictDecoder.feed(ByteBuffer.wrap(ByteUtil.decodeHex("50 03 41 42")));
+        assertThrows(DecodeTLVException.class, () -> strictDecoder.finish());
+        assertEquals(strictDecoder.isPartial(), false);
+
+        // Non-strict mode fixes the length as DecodeTLV does
+        TLVIncrementalDecoder decoder = new TLVIncrementalDecoder(tags::add);
+        decoder.feed(ByteBuffer.wrap(ByteUtil.decodeHex("50 03 41 42")));
+        decoder.finish();
+        assertEquals(tags.size(), 1);
+        assertEquals(tags.get(0).getDataObjectAsString(), "AB");
+
+        decoder.feed(ByteBuffer.wrap(ByteUtil.decodeHex("9F")));
+        assertThrows(DecodeTLVException.class, () -> decoder.finish());
+    }
+
+    @Test
+    public void testDeclaredLength() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testDeclaredLength");
+
+        List<TagTLV> tags = new ArrayList<TagTLV>();
+
+        // the declared length is not allocated before the bytes arrive
+        TLVIncrementalDecoder decoder = new TLVIncrementalDecoder(true, tags::add);
+        decoder.feed(ByteBuffer.wrap(ByteUtil.decodeHex("DF 01 84 7F FF FF F0 01 02 03")));
+        assertEquals(decoder.isPartial(), true);
+        assertEquals(decoder.getPendingBytes(), 10);
+
+        TLVDecoder limited = TLVDecoder.builder().strict(true).zeroCopy(true).maxValueBytes(16).build();
+        TLVIncrementalDecoder limitedDecoder = new TLVIncrementalDecoder(limited, tags::add);
+        DecodeTLVException e = expectThrows(DecodeTLVException.class,
+                () -> limitedDecoder.feed(ByteBuffer.wrap(ByteUtil.decodeHex("DF 01 84 7F FF FF F0"))));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.VALUE_BYTES_LIMIT);
+        assertEquals(e.getTagId(), 0xDF01);
+
+        // a value larger than the first buffer
+        byte[] value = new byte[1000];
+        Arrays.fill(value, (byte) 0x55);
+        TLVIncrementalDecoder growing = new TLVIncrementalDecoder(true, tags::add);
+        growing.feed(ByteBuffer.wrap(ByteUtil.decodeHex("DF 02 82 03 E8")));
+        for (int offset = 0; offset < value.length; offset += 300) {
+            growing.feed(ByteBuffer.wrap(value, offset, Math.min(300, value.length - offset)));
+        }
+        assertEquals(tags.size(), 1);
+        assertEquals(Arrays.equals(tags.get(0).getDataObject(), value), true);
+    }
+
+    @Test
+    public void testStreamOffset() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testStreamOffset");
+
+        List<TagTLV> tags = new ArrayList<TagTLV>();
+        TLVDecodeMetrics metrics = new TLVDecodeMetrics();
+        TLVDecoder limited = TLVDecoder.builder().strict(true).zeroCopy(true).maxValueBytes(16).listener(metrics).build();
+        TLVIncrementalDecoder decoder = new TLVIncrementalDecoder(limited, tags::add);
+
+        // an error of the decoder is located in the stream
+        byte[] data = ByteUtil.decodeHex(LOG_ENTRY + EMPTY + "70 03 5A 05 01");
+        decoder.feed(ByteBuffer.wrap(data, 0, 9));
+        assertEquals(decoder.getStreamOffset(), 9L);
+        DecodeTLVException e = expectThrows(DecodeTLVException.class, () -> decoder.feed(ByteBuffer.wrap(data, 9, data.length - 9)));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.VALUE_TRUNCATED);
+        assertEquals(e.getLongOffset(), 12L);
+        assertEquals(tags.size(), 2);
+        decoder.reset();
+        assertEquals(decoder.getStreamOffset(), 15L);
+
+        // the errors of the header are also reported to the listener
+        e = expectThrows(DecodeTLVException.class, () -> decoder.feed(ByteBuffer.wrap(ByteUtil.decodeHex("DF 01 84 7F FF FF F0"))));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.VALUE_BYTES_LIMIT);
+        assertEquals(e.getOffset(), 15);
+        decoder.reset();
+
+        e = expectThrows(DecodeTLVException.class, () -> decoder.feed(ByteBuffer.wrap(ByteUtil.decodeHex("DF 81 82 83 84 01"))));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.TAG_TOO_LONG);
+        assertEquals(e.getOffset(), 22);
+        decoder.reset();
+
+        decoder.feed(ByteBuffer.wrap(ByteUtil.decodeHex("50 03 41")));
+        e = expectThrows(DecodeTLVException.class, () -> decoder.finish());
+        assertEquals(e.getReason(), DecodeTLVException.Reason.INCOMPLETE_DATA);
+        assertEquals(e.getOffset(), 27);
+        assertEquals(decoder.getStreamOffset(), 30L);
+
+        assertEquals(metrics.getMessages(), 2L);
+        assertEquals(metrics.getFailures(DecodeTLVException.Reason.VALUE_TRUNCATED), 1L);
+        assertEquals(metrics.getFailures(DecodeTLVException.Reason.VALUE_BYTES_LIMIT), 1L);
+        assertEquals(metrics.getFailures(DecodeTLVException.Reason.TAG_TOO_LONG), 1L);
+        assertEquals(metrics.getFailures(DecodeTLVException.Reason.INCOMPLETE_DATA), 1L);
+    }
+
+}
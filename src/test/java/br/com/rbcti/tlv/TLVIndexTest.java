@@ -0,0 +1,183 @@
+package br.com.rbcti.tlv;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the TLVIndex class.
+ *
+ * @author Renato Cunha
+ *
+ */
+public class TLVIndexTest {
+
+    private static final String FCI = "6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 02 0B 0A";
+
+    @Test
+    public void testIndex() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testIndex");
+
+        TLVIndex index = new TLVIndex(true);
+        index.index(ByteUtil.decodeHex(FCI + " 9F 36 02 00 2A"));
+
+        assertEquals(index.size(), 7);
+
+        int[] tagIds = { 0x6F, 0xA5, 0x50, 0x5F2D, 0xBF0C, 0x9F4D, 0x9F36 };
+        int[] parents = { -1, 0, 1, 1, 1, 4, -1 };
+        int[] nextSiblings = { 6, -1, 3, 4, -1, -1, -1 };
+        int[] depths = { 0, 1, 2, 2, 2, 3, 0 };
+        int[] firstChildren = { 1, 2, -1, -1, 5, -1, -1 };
+
+        for (int node = 0; node < index.size(); node++) {
+            assertEquals(index.tagId(node), tagIds[node]);
+            assertEquals(index.parent(node), parents[node]);
+            assertEquals(index.nextSibling(node), nextSiblings[node]);
+            assertEquals(index.depth(node), depths[node]);
+            assertEquals(index.firstChild(node), firstChildren[node]);
+        }
+
+        assertEquals(index.isConstructed(4), true);
+        assertEquals(index.valueOffset(2), 6);
+        assertEquals(index.valueLength(2), 6);
+        assertEquals(index.value(6).getShort(0), (short) 42);
+
+        byte[] label = new byte[6];
+        index.copyValueTo(2, label, 0);
+        assertEquals(new String(label), "AppTst");
+
+        assertThrows(IndexOutOfBoundsException.class, () -> index.tagId(7));
+    }
+
+    @Test
+    public void testGetTags() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testGetTags");
+
+        TLVIndex index = new TLVIndex(true);
+        index.index(ByteUtil.decodeHex(FCI));
+
+        List<TagTLV> tags = index.getTags();
+        List<TagTLV> expected = new DecodeTLV(true).decode(ByteUtil.decodeHex(FCI));
+
+        assertEquals(tags.size(), 1);
+        assertEquals(tags.get(0).getChildren().get(0).getChildren().size(), 3);
+        assertEquals(DecodeTLV.findTagTLV(tags, TagTLVEnum.LANGUAGE_PREFERENCE).getDataObjectAsString(), "Portugues");
+        assertEquals(DecodeTLV.findTagTLV(tags, TagTLVEnum.LOG_ENTRY).getDataObject(), DecodeTLV.findTagTLV(expected, TagTLVEnum.LOG_ENTRY).getDataObject());
+    }
+
+    @Test
+    public void testReuse() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testReuse");
+
+        TLVIndex index = new TLVIndex(true);
+
+        // More nodes and levels than the initial capacity
+        StringBuilder nested = new StringBuilder();
+        for (int level = 0; level < 20; level++) {
+            nested.append("E1 ").append(String.format("%02X ", (19 - level) * 2 + 3));
+        }
+        nested.append("01 01 FF");
+
+        index.index(ByteUtil.decodeHex(nested.toString()));
+        assertEquals(index.size(), 21);
+        assertEquals(index.depth(20), 20);
+        assertEquals(index.parent(20), 19);
+
+        index.index(ByteUtil.decodeHex("01  02  B1 B2     02  01  C1"));
+        assertEquals(index.size(), 2);
+        assertEquals(index.nextSibling(0), 1);
+
+        assertThrows(DecodeTLVException.class, () -> index.index(ByteUtil.decodeHex("01    02    A1 A2      02    04    C1 C2 C3")));
+        assertEquals(index.size(), 0);
+
+        index.reset();
+        assertEquals(index.getTags().size(), 0);
+    }
+
+    @Test
+    public void testFind() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testFind");
+
+        TLVIndex index = new TLVIndex(true);
+        index.index(ByteUtil.decodeHex(FCI + " 70 06 9F 4D 01 01 50 00 9F 4D 01 02"));
+
+        assertEquals(index.find(TagTLVEnum.LOG_ENTRY), 5);
+        assertEquals(index.findNext(5), 7);
+        assertEquals(index.findNext(7), 9);
+        assertEquals(index.findNext(9), -1);
+        assertEquals(index.findAll(0x9F4D), new int[] { 5, 7, 9 });
+        assertEquals(index.findAll(0x5A), new int[0]);
+        assertEquals(index.find(0x5A), -1);
+
+        assertEquals(index.find("6F/A5/BF0C/9F4D"), 5);
+        assertEquals(index.find("70/9F4D"), 7);
+        assertEquals(index.find("9F4D"), 9);
+        assertEquals(index.find("6F/50"), -1);
+        assertEquals(index.find("A5/50"), -1);
+        assertEquals(index.find(0x6F, 0xA5, 0x50), 2);
+
+        assertThrows(IllegalArgumentException.class, () -> index.find("6F/XY"));
+
+        // Only 2, 4, 6 or 8 hexadecimal digits, without sign
+        assertEquals(index.find("6f/a5/50"), 2);
+        assertThrows(IllegalArgumentException.class, () -> index.find("6F/-5A"));
+        assertThrows(IllegalArgumentException.class, () -> index.find("6F/+5A"));
+        assertThrows(IllegalArgumentException.class, () -> index.find("6F/A5/1000000050"));
+        assertThrows(IllegalArgumentException.class, () -> index.find("6F/A5/050"));
+        assertThrows(IllegalArgumentException.class, () -> index.find("6F//50"));
+        assertThrows(IllegalArgumentException.class, () -> index.find("6F/A5/"));
+    }
+
+    @Test
+    public void testFindManyTags() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testFindManyTags");
+
+        // 200 different two and three byte tags, more than the initial capacity of the tag map
+        StringBuilder data = new StringBuilder();
+        for (int tag = 0; tag < 200; tag++) {
+            data.append(String.format("%X 01 %02X ", manyTagsId(tag), tag));
+        }
+
+        TLVIndex index = new TLVIndex(true);
+        index.index(ByteUtil.decodeHex(data.toString()));
+
+        for (int tag = 0; tag < 200; tag++) {
+            int node = index.find(manyTagsId(tag));
+            assertEquals(node, tag);
+            assertEquals(index.value(node).get(0), (byte) tag);
+        }
+
+        index.index(ByteUtil.decodeHex("DF 01 01 FF"));
+        assertEquals(index.find(0xDF01), 0);
+        assertEquals(index.find(0xDF02), -1);
+    }
+
+    private static int manyTagsId(int tag) {
+        return (tag < 0x80) ? 0xDF00 + tag : 0xDF8100 + (tag - 0x80);
+    }
+
+    @Test
+    public void testDeepNesting() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testDeepNesting");
+
+        final int levels = 100000;
+        TLVIndex index = new TLVIndex();
+        index.index(TLVDecoderTest.nested(levels));
+
+        // The tree is built without recursion
+        TagTLV innermost = TLVDecoderTest.innermost(index.getTags(), levels);
+        assertEquals(innermost.getTagId(), 0x9F4D);
+        assertEquals(innermost.getDataObject()[0], (byte) 0xFF);
+        assertEquals(index.getTag(1).getChildren().get(0).getTagId(), 0xE1);
+    }
+
+}
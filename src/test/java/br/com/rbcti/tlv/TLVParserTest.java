@@ -0,0 +1,134 @@
+package br.com.rbcti.tlv;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.expectThrows;
+
+import java.nio.ByteBuffer;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the TLVParser class.
+ *
+ * @author Renato Cunha
+ *
+ */
+public class TLVParserTest {
+
+    private static final String FCI = "6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 02 0B 0A";
+
+    /**
+     * Records the events as text. Constructed tags in <code>skipTagId</code> are not parsed.
+     */
+    private static class RecordHandler implements TLVHandler {
+
+        private final StringBuilder events = new StringBuilder();
+        private final int skipTagId;
+
+        RecordHandler(int skipTagId) {
+            this.skipTagId = skipTagId;
+        }
+
+        @Override
+        public boolean startConstructed(int tagId, int offset, int length) {
+            events.append("start ").append(Integer.toHexString(tagId)).append(' ').append(offset).append(' ').append(length).append(';');
+            return tagId != skipTagId;
+        }
+
+        @Override
+        public void primitive(int tagId, int offset, int length) {
+            events.append(Integer.toHexString(tagId)).append(' ').append(offset).append(' ').append(length).append(';');
+        }
+
+        @Override
+        public void endConstructed(int tagId) {
+            events.append("end ").append(Integer.toHexString(tagId)).append(';');
+        }
+
+    }
+
+    @Test
+    public void testParse() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testParse");
+
+        RecordHandler handler = new RecordHandler(-1);
+        new TLVParser(true).parse(ByteUtil.decodeHex(FCI), handler);
+
+        assertEquals(handler.events.toString(), "start 6f 2 30;start a5 4 28;50 6 6;5f2d 15 9;start bf0c 27 5;9f4d 30 2;end bf0c;end a5;end 6f;");
+    }
+
+    @Test
+    public void testParseSkipSubtree() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testParseSkipSubtree");
+
+        RecordHandler handler = new RecordHandler(TagTLVEnum.FILE_CONTROL_INFORMATION_PROPRIETARY_TEMPLATE.getId());
+        ByteBuffer data = ByteBuffer.wrap(ByteUtil.decodeHex("00 " + FCI + " 01 01 FF"));
+        data.position(1);
+
+        new TLVParser(true).parse(data, handler);
+
+        assertEquals(handler.events.toString(), "start 6f 3 30;start a5 5 28;end a5;end 6f;1 35 1;");
+        assertEquals(data.position(), 1);
+    }
+
+    @Test
+    public void testParseStrictMode() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testParseStrictMode");
+
+        byte[] data = ByteUtil.decodeHex("01    02    A1 A2      02    04    C1 C2 C3");
+
+        assertThrows(DecodeTLVException.class, () -> new TLVParser(true).parse(data, new RecordHandler(-1)));
+
+        RecordHandler handler = new RecordHandler(-1);
+        new TLVParser().parse(data, handler);
+
+        assertEquals(handler.events.toString(), "1 2 2;2 6 3;");
+    }
+
+    @Test
+    public void testDeepNesting() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testDeepNesting");
+
+        final int levels = 100000;
+        byte[] data = TLVDecoderTest.nested(levels);
+
+        int[] counts = new int[3];
+        TLVHandler handler = new TLVHandler() {
+
+            @Override
+            public boolean startConstructed(int tagId, int offset, int length) {
+                counts[0]++;
+                return true;
+            }
+
+            @Override
+            public void primitive(int tagId, int offset, int length) {
+                counts[1]++;
+            }
+
+            @Override
+            public void endConstructed(int tagId) {
+                counts[2]++;
+            }
+
+        };
+
+        // The parsing does not recurse, the depth is limited only by the data
+        new TLVParser(true).parse(data, handler);
+        assertEquals(counts[0], levels);
+        assertEquals(counts[1], 1);
+        assertEquals(counts[2], levels);
+
+        DecodeTLVException e = expectThrows(DecodeTLVException.class, () -> new TLVParser(true, levels).parse(data, handler));
+        assertEquals(e.getReason(), DecodeTLVException.Reason.DEPTH_LIMIT);
+        assertEquals(e.getOffset(), levels * 5);
+
+        assertThrows(IllegalArgumentException.class, () -> new TLVParser(true, 0));
+    }
+
+}
@@ -0,0 +1,243 @@
+package br.com.rbcti.tlv;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the TLVProcessor class.
+ *
+ * @author Renato Cunha
+ *
+ */
+public class TLVProcessorTest {
+
+    private static final String FCI = "6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 02 0B 0A";
+    private static final String LOG_ENTRY = "9F 4D 81 03 01 02 03";
+    private static final String EMPTY = "5F 2D 00";
+
+    @Test
+    public void testDemand() {
+
+        System.out.println(getClass().getSimpleName() + ".testDemand");
+
+        // the tasks run in the calling thread
+        TLVProcessor processor = TLVProcessor.builder().executor(Runnable::run).bufferSize(2).build();
+        Upstream upstream = new Upstream();
+        Downstream downstream = new Downstream();
+
+        processor.onSubscribe(upstream);
+        assertEquals(upstream.requested, 2L);
+
+        processor.subscribe(downstream);
+        assertEquals(downstream.subscription != null, true);
+
+        // the chunks end in the middle of the data objects
+        byte[] data = ByteUtil.decodeHex(FCI + LOG_ENTRY + EMPTY);
+        processor.onNext(ByteBuffer.wrap(data, 0, 20));
+        processor.onNext(ByteBuffer.wrap(data, 20, 20));
+        assertEquals(downstream.tags.size(), 0);
+
+        // the chunks are decoded until a tag is delivered
+        downstream.subscription.request(1);
+        assertEquals(downstream.tags.size(), 1);
+        assertEquals(downstream.tags.get(0).getTagId(), TagTLVEnum.FILE_CONTROL_INFORMATION_TEMPLATE.getId());
+        assertEquals(upstream.requested, 4L);
+
+        // without demand the chunk is kept and the stream is not completed
+        processor.onNext(ByteBuffer.wrap(data, 40, data.length - 40));
+        processor.onComplete();
+        assertEquals(downstream.tags.size(), 1);
+        assertEquals(downstream.completed, false);
+
+        downstream.subscription.request(Long.MAX_VALUE);
+        downstream.subscription.request(Long.MAX_VALUE);
+        assertEquals(downstream.tags.size(), 3);
+        assertEquals(downstream.tags.get(2).getValueLength(), 0);
+        assertEquals(downstream.completed, true);
+        assertEquals(downstream.error, null);
+    }
+
+    @Test
+    public void testExecutor() throws InterruptedException {
+
+        System.out.println(getClass().getSimpleName() + ".testExecutor");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "tlv-processor"));
+        try {
+            TLVProcessor processor = TLVProcessor.builder().executor(executor).build();
+            Downstream downstream = new Downstream() {
+
+                @Override
+                public void onSubscribe(TLVFlow.Subscription subscription) {
+                    super.onSubscribe(subscription);
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(TagTLV item) {
+                    super.onNext(item);
+                    threads.add(Thread.currentThread().getName());
+                    subscription.request(1);
+                }
+
+            };
+
+            processor.onSubscribe(new Upstream());
+            processor.subscribe(downstream);
+
+            byte[] data = ByteUtil.decodeHex(FCI + LOG_ENTRY + EMPTY);
+            for (int ct = 0; ct < 100; ct++) {
+                for (int offset = 0; offset < data.length; offset += 7) {
+                    processor.onNext(ByteBuffer.wrap(data, offset, Math.min(7, data.length - offset)));
+                }
+            }
+            processor.onComplete();
+
+            assertEquals(downstream.done.await(10, TimeUnit.SECONDS), true);
+            assertEquals(downstream.tags.size(), 300);
+            assertEquals(downstream.tags.get(298).getDataObject()[2], (byte) 0x03);
+            assertEquals(downstream.threads.contains(Thread.currentThread().getName()), false);
+            assertEquals(downstream.completed, true);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testErrors() {
+
+        System.out.println(getClass().getSimpleName() + ".testErrors");
+
+        // invalid data cancels the upstream subscription
+        TLVProcessor processor = TLVProcessor.builder()
+                .decoder(TLVDecoder.builder().strict(true).build())
+                .executor(Runnable::run)
+                .build();
+        Upstream upstream = new Upstream();
+        Downstream downstream = new Downstream();
+
+        processor.onSubscribe(upstream);
+        processor.subscribe(downstream);
+        downstream.subscription.request(10);
+        processor.onNext(ByteBuffer.wrap(ByteUtil.decodeHex(LOG_ENTRY + "70 03 5A 05 01")));
+
+        assertEquals(downstream.tags.size(), 1);
+        assertEquals(((DecodeTLVException) downstream.error).getReason(), DecodeTLVException.Reason.VALUE_TRUNCATED);
+        assertEquals(upstream.cancelled, true);
+
+        // a data object received in part at the end of the stream
+        processor = TLVProcessor.builder().decoder(TLVDecoder.builder().strict(true).build()).executor(Runnable::run).build();
+        downstream = new Downstream();
+        processor.subscribe(downstream);
+        downstream.subscription.request(10);
+        processor.onNext(ByteBuffer.wrap(ByteUtil.decodeHex("9F 4D 03 01")));
+        processor.onComplete();
+        assertEquals(((DecodeTLVException) downstream.error).getReason(), DecodeTLVException.Reason.INCOMPLETE_DATA);
+
+        // the demand must be greater than zero
+        processor = TLVProcessor.builder().executor(Runnable::run).build();
+        upstream = new Upstream();
+        downstream = new Downstream();
+        processor.onSubscribe(upstream);
+        processor.subscribe(downstream);
+        downstream.subscription.request(0);
+        assertEquals(downstream.error instanceof IllegalArgumentException, true);
+        assertEquals(upstream.cancelled, true);
+
+        // only one subscriber
+        Downstream second = new Downstream();
+        processor.subscribe(second);
+        assertEquals(second.error instanceof IllegalStateException, true);
+
+        // an exception of the subscriber ends the stream
+        processor = TLVProcessor.builder().executor(Runnable::run).build();
+        upstream = new Upstream();
+        Downstream failing = new Downstream() {
+
+            @Override
+            public void onNext(TagTLV item) {
+                super.onNext(item);
+                throw new IllegalStateException("onNext");
+            }
+
+        };
+        processor.onSubscribe(upstream);
+        processor.subscribe(failing);
+        failing.subscription.request(10);
+        processor.onNext(ByteBuffer.wrap(ByteUtil.decodeHex(LOG_ENTRY + EMPTY)));
+        assertEquals(failing.tags.size(), 1);
+        assertEquals(failing.error.getMessage(), "onNext");
+        assertEquals(upstream.cancelled, true);
+
+        // the processor is not blocked after the exception
+        processor.onNext(ByteBuffer.wrap(ByteUtil.decodeHex(EMPTY)));
+        processor.onComplete();
+        assertEquals(failing.tags.size(), 1);
+        assertEquals(failing.completed, false);
+
+        assertThrows(IllegalArgumentException.class, () -> TLVProcessor.builder().bufferSize(0));
+        assertThrows(IllegalArgumentException.class, () -> TLVProcessor.builder().executor(null));
+    }
+
+    private static class Upstream implements TLVFlow.Subscription {
+
+        long requested;
+        boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+    }
+
+    private static class Downstream implements TLVFlow.Subscriber<TagTLV> {
+
+        final List<TagTLV> tags = new ArrayList<TagTLV>();
+        final List<String> threads = new ArrayList<String>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        TLVFlow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(TLVFlow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(TagTLV item) {
+            tags.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            done.countDown();
+        }
+
+    }
+
+}
@@ -0,0 +1,143 @@
+package br.com.rbcti.tlv;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the TLVQuery class.
+ *
+ * @author Renato Cunha
+ *
+ */
+public class TLVQueryTest {
+
+    private static final String FCI = "6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 02 0B 0A";
+
+    // 77 template with 9F27 and a 9F10 under a nested template, then a 70 template with another 9F10
+    private static final String GENERATE_AC = "77 0E 9F 27 01 80 E1 08 9F 10 05 01 02 03 04 05 70 05 9F 10 02 0A 0B";
+
+    @Test
+    public void testMatch() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testMatch");
+
+        TLVQuery query = TLVQuery.compile("6F/A5/50", "70/57", "77/9F27", "77|70/**/9F10", "**/9F4D", "6F/*/5F2D");
+        assertEquals(query.size(), 6);
+        assertEquals(query.getExpression(3), "77|70/**/9F10");
+
+        TLVQueryResult result = new TLVQueryResult();
+
+        assertEquals(query.match(ByteUtil.decodeHex(FCI), result), 3);
+        assertEquals(result.size(), 6);
+        assertEquals(result.tagId(0), 0x50);
+        assertEquals(result.getTag(0).getDataObjectAsString(), "AppTst");
+        assertEquals(result.isFound(1), false);
+        assertEquals(result.value(1), null);
+        assertEquals(result.tagId(1), -1);
+        assertEquals(result.valueLength(4), 2);
+        assertEquals(result.value(4).get(1), (byte) 0x0A);
+        assertEquals(result.getTag(5).getDataObjectAsString(), "Portugues");
+
+        // The same result is reused for the next message
+        ByteBuffer data = ByteBuffer.wrap(ByteUtil.decodeHex(GENERATE_AC));
+        assertEquals(query.match(data, result), 2);
+        assertEquals(result.isFound(0), false);
+        assertEquals(result.getTag(2).getDataObject()[0], (byte) 0x80);
+        assertEquals(result.valueLength(3), 5);
+        assertEquals(data.position(), 0);
+
+        // The first 9F10 in the order of the data is the one under 77
+        TagTLV[] slots = new TagTLV[6];
+        assertEquals(result.copyTo(slots), 2);
+        assertEquals(slots[0], null);
+        assertEquals(Arrays.equals(slots[3].getDataObject(), ByteUtil.decodeHex("01 02 03 04 05")), true);
+
+        // Only under 70
+        TLVQueryResult under70 = new TLVQueryResult();
+        assertEquals(TLVQuery.compile("70/**/9F10").match(data, under70), 1);
+        assertEquals(Arrays.equals(under70.getTag(0).getDataObject(), ByteUtil.decodeHex("0A 0B")), true);
+
+        // ** also matches no level
+        assertEquals(TLVQuery.compile("77/**/9F27").match(data, under70), 1);
+        assertEquals(under70.tagId(0), 0x9F27);
+        assertEquals(under70.toString(), "TLVQueryResult [0=9F27]");
+    }
+
+    @Test
+    public void testMatchTags() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testMatchTags");
+
+        TLVQuery query = TLVQuery.compile("6F/A5/50", "77|70/**/9F10", "**/9F4D");
+        TLVQueryResult result = new TLVQueryResult();
+
+        List<TagTLV> tags = new DecodeTLV(true).decode(ByteUtil.decodeHex(FCI));
+        assertEquals(query.match(tags, result), 2);
+        assertEquals(result.getTag(0) == tags.get(0).getChildren().get(0).getChildren().get(0), true);
+        assertEquals(result.value(2).get(0), (byte) 0x0B);
+
+        // The children that cannot match are not decoded
+        TLVDecoder lazy = TLVDecoder.builder().strict(true).lazy(true).build();
+        tags = lazy.decode(ByteUtil.decodeHex(GENERATE_AC + " E1 03 5A 05 01"));
+
+        assertEquals(TLVQuery.compile("70/9F10").match(tags, result), 1);
+        assertEquals(result.getTag(0).getDataObject()[1], (byte) 0x0B);
+
+        // The invalid E1 template is only decoded when it is searched
+        List<TagTLV> invalid = tags;
+        assertThrows(IllegalStateException.class, () -> TLVQuery.compile("E1/5A").match(invalid, new TLVQueryResult()));
+    }
+
+    @Test
+    public void testInvalid() {
+
+        System.out.println(getClass().getSimpleName() + ".testInvalid");
+
+        assertThrows(IllegalArgumentException.class, () -> TLVQuery.compile(""));
+        assertThrows(IllegalArgumentException.class, () -> TLVQuery.compile("77/**"));
+        assertThrows(IllegalArgumentException.class, () -> TLVQuery.compile("77|XY/9F10"));
+        assertThrows(IllegalArgumentException.class, () -> TLVQuery.compile("77//9F10"));
+        assertThrows(IllegalArgumentException.class, () -> TLVQuery.compile("77/-9F10"));
+        assertThrows(IllegalArgumentException.class, () -> TLVQuery.compile("77/1000009F10"));
+        assertThrows(IllegalArgumentException.class, () -> TLVQuery.compile("77/9F10/"));
+        assertThrows(IllegalArgumentException.class, () -> TLVQuery.compile("77|/9F10"));
+
+        TLVQuery strict = TLVQuery.builder().strict(true).add("70/5A").build();
+        assertEquals(strict.isStrict(), true);
+        assertThrows(DecodeTLVException.class, () -> strict.match(ByteUtil.decodeHex("70 03 5A 05 01"), new TLVQueryResult()));
+
+        TLVQueryResult result = new TLVQueryResult();
+        assertThrows(IndexOutOfBoundsException.class, () -> result.isFound(0));
+    }
+
+    @Test
+    public void testManyExpressions() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testManyExpressions");
+
+        // More states than a word of the state set
+        String[] expressions = new String[25];
+        for (int ct = 0; ct < expressions.length; ct++) {
+            expressions[ct] = "E1/**/" + String.format("DF%02X", ct + 1);
+        }
+        TLVQuery query = TLVQuery.compile(expressions);
+
+        StringBuilder hex = new StringBuilder("E1 66 E2 64");
+        for (int ct = expressions.length - 1; ct >= 0; ct--) {
+            hex.append(String.format(" DF %02X 01 %02X", ct + 1, ct));
+        }
+
+        TLVQueryResult result = new TLVQueryResult();
+        assertEquals(query.match(ByteUtil.decodeHex(hex.toString()), result), 25);
+        for (int ct = 0; ct < expressions.length; ct++) {
+            assertEquals(result.value(ct).get(0), (byte) ct);
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package br.com.rbcti.tlv;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the TLVReader class.
+ *
+ * @author Renato Cunha
+ *
+ */
+public class TLVReaderTest {
+
+    private static final String FCI = "6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 02 0B 0A";
+
+    @Test
+    public void testReadAll() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testReadAll");
+
+        TLVReader reader = new TLVReader(ByteUtil.decodeHex(FCI), true);
+        StringBuilder tags = new StringBuilder();
+
+        while (true) {
+            if (reader.next()) {
+                tags.append(reader.depth()).append(':').append(Integer.toHexString(reader.tagId())).append(' ');
+                if (reader.isConstructed()) {
+                    reader.enter();
+                }
+            } else if (reader.depth() > 0) {
+                reader.exit();
+            } else {
+                break;
+            }
+        }
+
+        assertEquals(tags.toString(), "0:6f 1:a5 2:50 2:5f2d 2:bf0c 3:9f4d ");
+    }
+
+    @Test
+    public void testEnterExitSkip() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testEnterExitSkip");
+
+        ByteBuffer data = ByteBuffer.allocateDirect(64);
+        data.put(ByteUtil.decodeHex(FCI + " 9F 36 02 00 2A"));
+        data.flip();
+
+        TLVReader reader = new TLVReader(data, true);
+
+        assertEquals(reader.next(), true);
+        reader.enter();
+        assertEquals(reader.next(), true);
+        assertEquals(reader.tagId(), 0xA5);
+        reader.enter();
+        assertEquals(reader.next(), true);
+        assertEquals(reader.tagId(), 0x50);
+        assertEquals(reader.valueOffset(), 6);
+        assertEquals(reader.valueLength(), 6);
+
+        byte[] label = new byte[6];
+        reader.copyValueTo(label, 0);
+        assertEquals(new String(label), "AppTst");
+
+        // Leave A5 and 6F before reading their siblings
+        reader.exit();
+        assertEquals(reader.next(), false);
+        reader.exit();
+
+        assertEquals(reader.next(), true);
+        assertEquals(reader.tagId(), 0x9F36);
+        assertEquals(reader.depth(), 0);
+        assertEquals(reader.value().getShort(0), (short) 42);
+
+        reader.skipValue();
+        assertEquals(reader.position(), 37);
+        assertEquals(reader.next(), false);
+
+        // The buffer is not changed
+        assertEquals(data.position(), 0);
+        assertEquals(data.limit(), 37);
+
+        assertThrows(IllegalStateException.class, () -> reader.exit());
+    }
+
+    @Test
+    public void testReset() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testReset");
+
+        TLVReader reader = new TLVReader(true);
+
+        reader.reset(ByteUtil.decodeHex("01  02  B1 B2"));
+        assertEquals(reader.next(), true);
+        assertThrows(IllegalStateException.class, () -> reader.enter());
+
+        reader.reset(ByteUtil.decodeHex("01    02    A1 A2      02    04    C1 C2 C3"));
+        assertEquals(reader.next(), true);
+        assertEquals(Arrays.equals(new byte[] { (byte) 0xA1, (byte) 0xA2 }, toArray(reader.value())), true);
+        assertThrows(DecodeTLVException.class, () -> reader.next());
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] array = new byte[buffer.remaining()];
+        buffer.get(array);
+        return array;
+    }
+
+}
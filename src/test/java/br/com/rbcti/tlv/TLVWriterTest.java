@@ -0,0 +1,161 @@
+package br.com.rbcti.tlv;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the TLVWriter class.
+ *
+ * @author Renato Cunha
+ *
+ */
+public class TLVWriterTest {
+
+    private static final String FCI = "6F 1E A5 1C 50 06 41 70 70 54 73 74 5F 2D 09 50 6F 72 74 75 67 75 65 73 BF 0C 05 9F 4D 02 0B 0A";
+
+    @Test
+    public void testBuilder() {
+
+        System.out.println(getClass().getSimpleName() + ".testBuilder");
+
+        byte[] dest = new byte[64];
+
+        TLVWriter writer = new TLVWriter(dest);
+        writer.startConstructed(0x6F)
+              .startConstructed(0xA5)
+              .primitive(0x50, "AppTst".getBytes())
+              .primitive(0x5F2D, "Portugues".getBytes())
+              .startConstructed(0xBF0C)
+              .primitive(0x9F4D, new byte[] { 0x0B, 0x0A })
+              .endConstructed()
+              .endConstructed()
+              .endConstructed();
+
+        assertEquals(writer.depth(), 0);
+        assertEquals(writer.length(), 32);
+        assertEquals(Arrays.equals(Arrays.copyOf(dest, writer.length()), ByteUtil.decodeHex(FCI)), true);
+
+        assertThrows(IllegalStateException.class, () -> writer.endConstructed());
+    }
+
+    @Test
+    public void testLongLengths() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testLongLengths");
+
+        int[] lengths = { 0, 127, 128, 255, 256, 65535, 65536, 16777216 };
+        String[] lengthFields = { "00", "7f", "8180", "81ff", "820100", "82ffff", "83010000", "8401000000" };
+
+        for (int ct = 0; ct < lengths.length; ct++) {
+            byte[] dest = new byte[lengths[ct] + 16];
+
+            // The length of the template is not known when it starts, the value is moved when it ends
+            TLVWriter writer = new TLVWriter(dest, 1, dest.length - 1);
+            writer.startConstructed(0xE1).primitive(0xDF01, new byte[lengths[ct]]).endConstructed();
+
+            int lengthFieldSize = lengthFields[ct].length() / 2;
+            int templateLength = 2 + lengthFieldSize + lengths[ct];
+
+            assertEquals(writer.position(), 1 + 1 + TLVWriter.lengthFieldSize(templateLength) + templateLength);
+            assertEquals(ByteUtil.encodeHex(Arrays.copyOfRange(dest, 1 + 1 + TLVWriter.lengthFieldSize(templateLength) + 2, 1 + 1 + TLVWriter.lengthFieldSize(templateLength) + 2 + lengthFieldSize)), lengthFields[ct]);
+
+            List<TagTLV> tags = new DecodeTLV(true).decode(ByteBuffer.wrap(dest), 1, writer.length());
+            assertEquals(tags.get(0).getChildren().get(0).getValueLength(), lengths[ct]);
+        }
+    }
+
+    @Test
+    public void testExpectedLength() {
+
+        System.out.println(getClass().getSimpleName() + ".testExpectedLength");
+
+        byte[] dest = new byte[16];
+
+        // More bytes were reserved for the length, the value moves back
+        new TLVWriter(dest).startConstructed(0x70, 1000).primitive(0x50, new byte[] { 0x41 }).endConstructed();
+
+        assertEquals(Arrays.equals(Arrays.copyOf(dest, 5), ByteUtil.decodeHex("70 03 50 01 41")), true);
+    }
+
+    @Test
+    public void testDecodeEncode() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testDecodeEncode");
+
+        byte[] label = new byte[300];
+        Arrays.fill(label, (byte) 0x41);
+
+        byte[] longTemplate = new byte[320];
+        TLVWriter writer = new TLVWriter(longTemplate);
+        writer.startConstructed(0x77).primitive(0x9F27, new byte[] { (byte) 0x80 }).primitive(0x50, label).endConstructed();
+        byte[] data = Arrays.copyOf(longTemplate, writer.length());
+
+        for (String hex : new String[] { FCI, ByteUtil.encodeHex(data) }) {
+            byte[] original = ByteUtil.decodeHex(hex);
+
+            for (boolean zeroCopy : new boolean[] { false, true }) {
+                List<TagTLV> tags = new DecodeTLV(true, zeroCopy).decode(original);
+
+                assertEquals(Arrays.equals(TLVWriter.encode(tags), original), true);
+
+                ByteBuffer direct = ByteBuffer.allocateDirect(original.length);
+                TLVWriter directWriter = new TLVWriter(direct).write(tags);
+                assertEquals(directWriter.length(), original.length);
+
+                byte[] encoded = new byte[original.length];
+                direct.get(encoded);
+                assertEquals(Arrays.equals(encoded, original), true);
+            }
+        }
+    }
+
+    @Test
+    public void testOverflow() {
+
+        System.out.println(getClass().getSimpleName() + ".testOverflow");
+
+        assertThrows(BufferOverflowException.class, () -> new TLVWriter(new byte[3]).primitive(0x50, new byte[2]));
+        assertThrows(BufferOverflowException.class, () -> new TLVWriter(new byte[130]).startConstructed(0x70).primitive(0x50, new byte[126]).endConstructed());
+        assertThrows(IllegalArgumentException.class, () -> new TLVWriter(ByteBuffer.allocate(4).asReadOnlyBuffer()));
+    }
+
+    @Test
+    public void testDeepNesting() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testDeepNesting");
+
+        final int levels = 100000;
+
+        // value lengths of the levels, from the innermost
+        int[] lengths = new int[levels];
+        lengths[levels - 1] = TLVWriter.encodedLength(0x9F4D, 1);
+        for (int level = levels - 2; level >= 0; level--) {
+            lengths[level] = TLVWriter.encodedLength(0xE1, lengths[level + 1]);
+        }
+
+        byte[] data = new byte[TLVWriter.encodedLength(0xE1, lengths[0])];
+        TLVWriter writer = new TLVWriter(data);
+        for (int level = 0; level < levels; level++) {
+            writer.startConstructed(0xE1, lengths[level]);
+        }
+        writer.primitive(0x9F4D, new byte[] { (byte) 0xFF });
+        for (int level = 0; level < levels; level++) {
+            writer.endConstructed();
+        }
+        assertEquals(writer.length(), data.length);
+
+        // The tree is encoded without recursion
+        List<TagTLV> tags = TLVDecoder.builder().strict(true).zeroCopy(true).build().decode(data);
+        assertEquals(TLVDecoderTest.innermost(tags, levels).getTagId(), 0x9F4D);
+        assertEquals(TLVWriter.encodedLength(tags.get(0)), data.length);
+        assertEquals(Arrays.equals(TLVWriter.encode(tags), data), true);
+    }
+
+}
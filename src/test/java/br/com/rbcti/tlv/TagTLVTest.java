@@ -0,0 +1,123 @@
+package br.com.rbcti.tlv;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the TagTLV class.
+ *
+ * @author Renato Cunha
+ *
+ */
+public class TagTLVTest {
+
+    // 9F02 amount, 5F24 expiry, 9F36 ATC, 50 label, 5A PAN, 9F1A country code, 9F26 cryptogram
+    private static final String ICC_DATA = "9F 02 06 00 00 00 01 23 45 5F 24 03 25 12 31 9F 36 02 01 2C 50 06 41 70 70 54 73 74 "
+            + "5A 08 47 61 73 90 01 01 00 1F 9F 1A 02 00 76 9F 26 08 01 02 03 04 05 06 07 08";
+
+    @Test
+    public void testTypedValues() throws DecodeTLVException {
+
+        System.out.println(getClass().getSimpleName() + ".testTypedValues");
+
+        byte[] data = ByteUtil.decodeHex(ICC_DATA);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+
+        // copied values, views over an array and views over a direct buffer
+        List<List<TagTLV>> results = Arrays.asList(
+                new DecodeTLV(true).decode(data),
+                new DecodeTLV(true, true).decode(data),
+                new DecodeTLV(true, true).decode(direct));
+
+        for (List<TagTLV> tags : results) {
+            assertEquals(DecodeTLV.findTagTLV(tags, 0x9F02).getBcdLong(), 12345L);
+            assertEquals(DecodeTLV.findTagTLV(tags, 0x5F24).getDate(), LocalDate.of(2025, 12, 31));
+            assertEquals(DecodeTLV.findTagTLV(tags, 0x9F36).getUnsignedInt(), 300L);
+            assertEquals(DecodeTLV.findTagTLV(tags, 0x50).getAscii(), "AppTst");
+            assertEquals(DecodeTLV.findTagTLV(tags, 0x5A).getBcdLong(), 476173900101001L);
+
+            CharSequence label = DecodeTLV.findTagTLV(tags, 0x50).getAsciiSequence();
+            assertEquals(label.length(), 6);
+            assertEquals(label.charAt(0), 'A');
+            assertEquals(label.subSequence(3, 6).toString(), "Tst");
+            assertEquals(label.toString(), "AppTst");
+
+            // The text is chosen by the format of the dictionary
+            assertEquals(DecodeTLV.findTagTLV(tags, 0x50).getDataObjectAsString(), "AppTst");
+            assertEquals(DecodeTLV.findTagTLV(tags, 0x9F02).getDataObjectAsString(), "000000012345");
+            assertEquals(DecodeTLV.findTagTLV(tags, 0x5A).getDataObjectAsString(), "476173900101001");
+            assertEquals(DecodeTLV.findTagTLV(tags, 0x9F1A).getDataObjectAsString(), "0076");
+            assertEquals(DecodeTLV.findTagTLV(tags, 0x9F26).getDataObjectAsString(), "");
+        }
+
+        // The legacy text tags
+        TagTLV dfName = new TagTLV(0x84, 0x84, "1PAY.SYS.DDF01".getBytes());
+        assertEquals(dfName.getDataObjectAsString(), "1PAY.SYS.DDF01");
+    }
+
+    @Test
+    public void testInvalidTypedValues() {
+
+        System.out.println(getClass().getSimpleName() + ".testInvalidTypedValues");
+
+        TagTLV notBcd = new TagTLV(0x9F02, 0x9F, ByteUtil.decodeHex("00 00 00 00 1A 00"));
+        assertThrows(NumberFormatException.class, () -> notBcd.getBcdLong());
+        // Nibbles that are not digits are shown as they are
+        assertEquals(notBcd.getDataObjectAsString(), "000000001a00");
+
+        TagTLV digitAfterPadding = new TagTLV(0x5A, 0x5A, ByteUtil.decodeHex("12 F3"));
+        assertThrows(NumberFormatException.class, () -> digitAfterPadding.getBcdLong());
+
+        TagTLV tooLong = new TagTLV(0x9F02, 0x9F, ByteUtil.decodeHex("99 99 99 99 99 99 99 99 99 99"));
+        assertThrows(ArithmeticException.class, () -> tooLong.getBcdLong());
+
+        assertThrows(IllegalStateException.class, () -> new TagTLV(0x9F36, 0x9F, new byte[5]).getUnsignedInt());
+        assertThrows(IllegalStateException.class, () -> new TagTLV(0x9F36, 0x9F, new byte[0]).getUnsignedInt());
+        assertThrows(IllegalStateException.class, () -> new TagTLV(0x5F24, 0x5F, new byte[4]).getDate());
+        assertThrows(DateTimeException.class, () -> new TagTLV(0x5F24, 0x5F, ByteUtil.decodeHex("25 13 01")).getDate());
+
+        assertEquals(new TagTLV(0x9F36, 0x9F, ByteUtil.decodeHex("FF FF FF FF")).getUnsignedInt(), 0xFFFFFFFFL);
+        assertEquals(new TagTLV(0x5F24, 0x5F, ByteUtil.decodeHex("99 01 01")).getDate(), LocalDate.of(1999, 1, 1));
+        assertEquals(new TagTLV(0x9F02, 0x9F, null).getBcdLong(), 0L);
+        assertEquals(new TagTLV(0x50, 0x50, null).getAscii(), "");
+    }
+
+    @Test
+    public void testSharedDataObject() throws Exception {
+
+        System.out.println(getClass().getSimpleName() + ".testSharedDataObject");
+
+        List<TagTLV> tags = new DecodeTLV(true, true).decode(ByteUtil.decodeHex("5A 08 47 61 73 90 01 01 00 1F"));
+        TagTLV tag = tags.get(0);
+
+        // The threads that share a zero-copy tag get the same copy of the value
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> values = new ArrayList<Future<byte[]>>();
+            for (int ct = 0; ct < 8; ct++) {
+                values.add(executor.submit(tag::getDataObject));
+            }
+            for (Future<byte[]> value : values) {
+                assertEquals(value.get() == tag.getDataObject(), true);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(Arrays.equals(tag.getDataObject(), ByteUtil.decodeHex("47 61 73 90 01 01 00 1F")), true);
+    }
+
+}